@@ -0,0 +1,27 @@
+package org.jugistanbul.load;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+// Open-loop arrival schedule: event n is due at start + n / rate no matter how earlier events went.
+// The due time is handed to the callback so latency is measured from it (no coordinated omission).
+final class Arrivals {
+
+    private Arrivals() {
+    }
+
+    static void run(double perSecond, long startNanos, long endNanos, LongConsumer fire) {
+        if (perSecond <= 0) return;
+        double intervalNanos = 1e9 / perSecond;
+        for (long n = 0; ; n++) {
+            long due = startNanos + (long) (n * intervalNanos);
+            if (due - endNanos >= 0) return;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.currentThread().isInterrupted()) return;
+            }
+            fire.accept(due);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.jugistanbul.load;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Serves the upstream (Open-Meteo) responses recorded in the capture, with their recorded latency.
+// Repeated requests cycle through the responses recorded for them; a request the capture does not
+// have is answered with a response recorded for the same path, or 404 when there is none.
+@RestController
+@Profile("replay")
+public class CapturedUpstream {
+
+    private final McpCapture capture;
+    private final boolean replayLatency;
+    private final Map<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+    private final LongAdder exact = new LongAdder();
+    private final LongAdder pathOnly = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+
+    public CapturedUpstream(McpCapture capture, @Value("${replay.upstream-latency:true}") boolean replayLatency) {
+        this.capture = capture;
+        this.replayLatency = replayLatency;
+    }
+
+    @GetMapping("/**")
+    public ResponseEntity<byte[]> serve(HttpServletRequest request) throws InterruptedException {
+        String path = request.getRequestURI();
+        String pathAndQuery = request.getQueryString() == null ? path : path + "?" + request.getQueryString();
+        List<McpCapture.Upstream> responses = capture.upstream(pathAndQuery);
+        String key = pathAndQuery;
+        if (responses != null) {
+            exact.increment();
+        } else {
+            responses = capture.upstreamForPath(path);
+            key = path;
+            if (responses == null) {
+                missing.increment();
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            pathOnly.increment();
+        }
+        int index = Math.floorMod(cursors.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement(), responses.size());
+        McpCapture.Upstream response = responses.get(index);
+        if (replayLatency && response.durationMicros() > 0) TimeUnit.MICROSECONDS.sleep(response.durationMicros());
+        return ResponseEntity.status(response.status()).contentType(MediaType.APPLICATION_JSON).body(response.body());
+    }
+
+    Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("exact", exact.sum());
+        report.put("samePath", pathOnly.sum());
+        report.put("missing", missing.sum());
+        return report;
+    }
+}
@@ -0,0 +1,77 @@
+package org.jugistanbul.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// POSTs JSON bodies (taken round-robin) to one endpoint at a fixed arrival rate
+final class FixedRateHttpScenario {
+
+    private final HttpClient client;
+    private final URI uri;
+    private final double rate;
+    private final int maxInFlight;
+    private final Duration timeout;
+    private final List<String> bodies;
+    // "Bearer ..." or null
+    private final String authorization;
+    private final ScenarioStats stats;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    FixedRateHttpScenario(HttpClient client, URI uri, double rate, int maxInFlight, Duration timeout, List<String> bodies,
+                          String authorization, long measureFrom) {
+        this.stats = new ScenarioStats(measureFrom);
+        this.client = client;
+        this.uri = uri;
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+        this.bodies = bodies;
+        this.authorization = authorization;
+    }
+
+    ScenarioStats stats() {
+        return stats;
+    }
+
+    void run(long startNanos, long endNanos) {
+        AtomicInteger next = new AtomicInteger();
+        Arrivals.run(rate, startNanos, endNanos, due -> {
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                stats.dropped(due);
+                return;
+            }
+            String body = bodies.get(Math.floorMod(next.getAndIncrement(), bodies.size()));
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            if (authorization != null) builder.header("Authorization", authorization);
+            HttpRequest request = builder.build();
+            stats.sent(due);
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                inFlight.decrementAndGet();
+                if (error == null && response.statusCode() / 100 == 2) {
+                    stats.succeeded(due);
+                } else {
+                    stats.failed(due);
+                }
+            });
+        });
+        // Let requests that are still in flight finish (or time out) before reporting
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.jugistanbul.load;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Stand-in for ip-api.com/json, always reporting the configured location
+@RestController
+@Profile("stubs")
+public class IpApiStub {
+
+    private final LatencyProfile latency;
+    private final String city;
+    private final double latitude;
+    private final double longitude;
+
+    public IpApiStub(@Value("${stub.ip-api.latency.median:50ms}") Duration median,
+                     @Value("${stub.ip-api.latency.p99:500ms}") Duration p99,
+                     @Value("${stub.ip-api.error-rate:0}") double errorRate,
+                     @Value("${stub.ip-api.city:Istanbul}") String city,
+                     @Value("${stub.ip-api.lat:41.0082}") double latitude,
+                     @Value("${stub.ip-api.lon:28.9784}") double longitude) {
+        this.latency = new LatencyProfile(median, p99, errorRate);
+        this.city = city;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    @GetMapping("/json")
+    public ResponseEntity<Map<String, Object>> lookup(HttpServletRequest request) throws InterruptedException {
+        if (!latency.apply()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("status", "fail", "message", "stubbed failure"));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "success");
+        response.put("country", "Stubland");
+        response.put("countryCode", "SL");
+        response.put("city", city);
+        response.put("lat", latitude);
+        response.put("lon", longitude);
+        response.put("timezone", "Europe/Istanbul");
+        response.put("query", request.getRemoteAddr());
+        return ResponseEntity.ok(response);
+    }
+}
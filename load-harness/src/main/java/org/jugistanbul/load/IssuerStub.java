@@ -0,0 +1,104 @@
+package org.jugistanbul.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Stand-in for the Keycloak realm: a JWKS endpoint and a token endpoint issuing RS256 access tokens signed with
+// a key generated at startup, so bearer-token validation can be exercised without a running Keycloak.
+// The issuer is http://<host>/realms/<realm>, as for Keycloak.
+@RestController
+@Profile("stubs")
+@RequestMapping("/realms/{realm}/protocol/openid-connect")
+public class IssuerStub {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final ObjectMapper objectMapper;
+    private final KeyPair keyPair;
+    private final String keyId = UUID.randomUUID().toString();
+    private final Duration tokenLifetime;
+
+    public IssuerStub(ObjectMapper objectMapper,
+                      @Value("${stub.issuer.token-lifetime:1h}") Duration tokenLifetime) throws GeneralSecurityException {
+        this.objectMapper = objectMapper;
+        this.tokenLifetime = tokenLifetime;
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        this.keyPair = generator.generateKeyPair();
+    }
+
+    @GetMapping("/certs")
+    public Map<String, Object> certs() {
+        RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "RSA");
+        jwk.put("kid", keyId);
+        jwk.put("use", "sig");
+        jwk.put("alg", "RS256");
+        jwk.put("n", BASE64URL.encodeToString(unsigned(key.getModulus())));
+        jwk.put("e", BASE64URL.encodeToString(unsigned(key.getPublicExponent())));
+        return Map.of("keys", List.of(jwk));
+    }
+
+    // GET for convenience (curl, load runs); Keycloak's token endpoint is POST-only
+    @RequestMapping(value = "/token", method = {RequestMethod.GET, RequestMethod.POST})
+    public Map<String, Object> token(@PathVariable String realm, HttpServletRequest request,
+                                     @RequestParam(value = "username", defaultValue = "load-user") String username)
+            throws GeneralSecurityException, JsonProcessingException {
+        long now = System.currentTimeMillis() / 1000;
+        String issuer = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort() + "/realms/" + realm;
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", "RS256");
+        header.put("typ", "JWT");
+        header.put("kid", keyId);
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("iss", issuer);
+        claims.put("sub", username);
+        claims.put("preferred_username", username);
+        claims.put("iat", now);
+        claims.put("exp", now + tokenLifetime.toSeconds());
+        claims.put("jti", UUID.randomUUID().toString());
+        String signingInput = BASE64URL.encodeToString(objectMapper.writeValueAsBytes(header)) + "."
+                + BASE64URL.encodeToString(objectMapper.writeValueAsBytes(claims));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        String token = signingInput + "." + BASE64URL.encodeToString(signature.sign());
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("access_token", token);
+        response.put("token_type", "Bearer");
+        response.put("expires_in", tokenLifetime.toSeconds());
+        return response;
+    }
+
+    // JWK integers are unsigned big-endian without leading zero bytes
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+}
@@ -0,0 +1,38 @@
+package org.jugistanbul.load;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Latency and failure behaviour of one stubbed upstream. Delays are log-normal, fitted so that
+// the configured median and p99 hold, which gives the long right tail real upstreams have.
+final class LatencyProfile {
+
+    private static final double Z_99 = 2.326;
+
+    private final double medianNanos;
+    private final double sigma;
+    private final long maxNanos;
+    private final double errorRate;
+
+    LatencyProfile(Duration median, Duration p99, double errorRate) {
+        this.medianNanos = median.toNanos();
+        this.sigma = p99.compareTo(median) > 0 ? Math.log((double) p99.toNanos() / median.toNanos()) / Z_99 : 0;
+        // Cut off the extreme tail so a single sample cannot stall a stub thread for minutes
+        this.maxNanos = Math.max(median.toNanos(), p99.toNanos()) * 10;
+        this.errorRate = errorRate;
+    }
+
+    // Sleeps for one sampled delay; returns false when this call should be answered with an error
+    boolean apply() throws InterruptedException {
+        return apply(1);
+    }
+
+    // Same, with the delay scaled (e.g. a smaller model answering faster)
+    boolean apply(double scale) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = (long) (scale * Math.min(maxNanos, medianNanos * Math.exp(sigma * random.nextGaussian())));
+        if (delay > 0) TimeUnit.NANOSECONDS.sleep(delay);
+        return errorRate <= 0 || random.nextDouble() >= errorRate;
+    }
+}
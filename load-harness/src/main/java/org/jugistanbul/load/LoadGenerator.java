@@ -0,0 +1,180 @@
+package org.jugistanbul.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+// Drives step-05-mcp (WebSocket /chat-bot, REST /api/chat) and weather-mcp-server (/mcp/messages)
+// at fixed arrival rates, then writes a JSON report that can be diffed between builds.
+// A rate (or session count) of 0 disables that scenario.
+@Component
+@Profile("load")
+public class LoadGenerator implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final ObjectMapper objectMapper;
+    private final URI chatUrl;
+    private final URI mcpUrl;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration requestTimeout;
+    private final int maxInFlight;
+    private final double restRate;
+    private final double mcpRate;
+    private final int sessions;
+    private final double connectRate;
+    private final double messageRate;
+    private final List<String> chatMessages;
+    private final List<String> mcpCities;
+    private final Path reportFile;
+    private final String label;
+    private final URI tokenUrl;
+    private final boolean serverMetrics;
+
+    public LoadGenerator(ObjectMapper objectMapper,
+                         @Value("${load.target.chat-url:http://localhost:8080}") URI chatUrl,
+                         @Value("${load.target.mcp-url:http://localhost:8081}") URI mcpUrl,
+                         @Value("${load.warmup:10s}") Duration warmup,
+                         @Value("${load.duration:60s}") Duration duration,
+                         @Value("${load.request-timeout:30s}") Duration requestTimeout,
+                         @Value("${load.max-in-flight:2000}") int maxInFlight,
+                         @Value("${load.rest.rate:20}") double restRate,
+                         @Value("${load.mcp.rate:100}") double mcpRate,
+                         @Value("${load.websocket.sessions:2000}") int sessions,
+                         @Value("${load.websocket.connect-rate:200}") double connectRate,
+                         @Value("${load.websocket.message-rate:50}") double messageRate,
+                         @Value("${load.chat.messages:weather Istanbul,weather Ankara and Izmir,what should I wear today?}") List<String> chatMessages,
+                         @Value("${load.mcp.cities:Istanbul,Ankara,Izmir,Berlin,Lisbon}") List<String> mcpCities,
+                         @Value("${load.report:target/load-report.json}") Path reportFile,
+                         @Value("${load.label:}") String label,
+                         @Value("${load.auth.token-url:}") URI tokenUrl,
+                         @Value("${load.websocket.server-metrics:false}") boolean serverMetrics) {
+        this.objectMapper = objectMapper;
+        this.chatUrl = chatUrl;
+        this.mcpUrl = mcpUrl;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.requestTimeout = requestTimeout;
+        this.maxInFlight = maxInFlight;
+        this.restRate = restRate;
+        this.mcpRate = mcpRate;
+        this.sessions = sessions;
+        this.connectRate = connectRate;
+        this.messageRate = messageRate;
+        this.chatMessages = chatMessages;
+        this.mcpCities = mcpCities;
+        this.reportFile = reportFile;
+        this.label = label;
+        this.tokenUrl = tokenUrl;
+        this.serverMetrics = serverMetrics;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<String> chatBodies = new ArrayList<>();
+        for (String message : chatMessages) {
+            chatBodies.add(objectMapper.writeValueAsString(Map.of("message", message)));
+        }
+        List<String> mcpBodies = new ArrayList<>();
+        for (int i = 0; i < mcpCities.size(); i++) {
+            mcpBodies.add(objectMapper.writeValueAsString(Map.of(
+                    "jsonrpc", "2.0",
+                    "method", "tools/call",
+                    "params", Map.of("name", "Current weather by city", "arguments", Map.of("city", mcpCities.get(i))),
+                    "id", i + 1)));
+        }
+
+        String authorization = tokenUrl != null && !tokenUrl.toString().isEmpty() ? fetchToken(client) : null;
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        WebSocketScenario webSocket = sessions > 0 && connectRate > 0
+                ? new WebSocketScenario(client, webSocketUri(chatUrl.resolve("/chat-bot").normalize()), sessions, connectRate,
+                        messageRate, requestTimeout, chatMessages, measureFrom,
+                        serverMetrics ? new ServerMetrics(client, objectMapper, chatUrl) : null)
+                : null;
+        FixedRateHttpScenario rest = restRate > 0
+                ? new FixedRateHttpScenario(client, chatUrl.resolve("/api/chat"), restRate, maxInFlight, requestTimeout, chatBodies,
+                        authorization, measureFrom)
+                : null;
+        FixedRateHttpScenario mcp = mcpRate > 0
+                ? new FixedRateHttpScenario(client, mcpUrl.resolve("/mcp/messages"), mcpRate, maxInFlight, requestTimeout, mcpBodies,
+                        authorization, measureFrom)
+                : null;
+
+        log.info("Load run: warm-up {}, measured {}, websocket sessions={} messages/s={}, rest/s={}, mcp/s={}",
+                warmup, duration, webSocket != null ? sessions : 0, messageRate, restRate, mcpRate);
+        List<Thread> drivers = new ArrayList<>();
+        if (webSocket != null) drivers.add(Thread.ofVirtual().name("load-websocket").start(() -> webSocket.run(start, end)));
+        if (rest != null) drivers.add(Thread.ofVirtual().name("load-rest").start(() -> rest.run(start, end)));
+        if (mcp != null) drivers.add(Thread.ofVirtual().name("load-mcp").start(() -> mcp.run(start, end)));
+
+        for (Thread driver : drivers) driver.join();
+
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        if (webSocket != null) scenarios.put("websocket", webSocket.report(seconds));
+        if (rest != null) scenarios.put("rest-chat", rest.stats().report(seconds));
+        if (mcp != null) scenarios.put("mcp-tools-call", mcp.stats().report(seconds));
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("chatUrl", chatUrl.toString());
+        config.put("mcpUrl", mcpUrl.toString());
+        config.put("warmupSeconds", warmup.toSeconds());
+        config.put("durationSeconds", duration.toSeconds());
+        config.put("websocketSessions", webSocket != null ? sessions : 0);
+        config.put("websocketConnectRate", connectRate);
+        config.put("websocketMessageRate", messageRate);
+        config.put("restRate", restRate);
+        config.put("mcpRate", mcpRate);
+        config.put("bearerToken", authorization != null);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", label);
+        report.put("finishedAt", Instant.now().toString());
+        report.put("config", config);
+        report.put("scenarios", scenarios);
+        if (reportFile.getParent() != null) Files.createDirectories(reportFile.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+        log.info("Load report written to {}", reportFile.toAbsolutePath());
+    }
+
+    // The JDK WebSocket client only takes ws: and wss: URIs
+    private static URI webSocketUri(URI uri) {
+        String scheme = "https".equalsIgnoreCase(uri.getScheme()) ? "wss" : "ws";
+        return URI.create(scheme + uri.toString().substring(uri.getScheme().length()));
+    }
+
+    // One token for the whole run; the issuer stub's tokens outlive a run
+    private String fetchToken(HttpClient client) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(tokenUrl).GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IllegalStateException("Token request failed: HTTP " + response.statusCode());
+        return "Bearer " + objectMapper.readTree(response.body()).path("access_token").asText();
+    }
+}
@@ -0,0 +1,12 @@
+package org.jugistanbul.load;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class LoadHarnessApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(LoadHarnessApplication.class, args);
+    }
+}
@@ -0,0 +1,108 @@
+package org.jugistanbul.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+// A traffic capture written by weather-mcp-server (mcp.capture.file, see its TrafficCapture for the layout):
+// the JSON-RPC requests in arrival order and the upstream responses by path and query.
+// A capture cut short by a killed server is read up to its last complete record.
+@Component
+@Profile("replay")
+public class McpCapture {
+
+    private static final Logger log = LoggerFactory.getLogger(McpCapture.class);
+    private static final int MAGIC = 0x4D434150; // "MCAP"
+    private static final int VERSION = 1;
+    private static final byte REQUEST = 1;
+    private static final byte UPSTREAM = 2;
+
+    record Request(long offsetMicros, String body) {
+    }
+
+    record Upstream(long durationMicros, int status, byte[] body) {
+    }
+
+    private final Path file;
+    private final Instant startedAt;
+    private final List<Request> requests = new ArrayList<>();
+    private final Map<String, List<Upstream>> upstream = new HashMap<>();
+    private final Map<String, List<Upstream>> upstreamByPath = new HashMap<>();
+
+    public McpCapture(@Value("${replay.file}") Path file) throws IOException {
+        this.file = file;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 64 * 1024), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException(file + " is not an MCP capture");
+            this.startedAt = Instant.ofEpochMilli(in.readLong());
+            try {
+                while (true) {
+                    byte kind = in.readByte();
+                    long offsetMicros = in.readLong();
+                    if (kind == REQUEST) {
+                        requests.add(new Request(offsetMicros, new String(readBytes(in), StandardCharsets.UTF_8)));
+                    } else if (kind == UPSTREAM) {
+                        long durationMicros = in.readLong();
+                        int status = in.readInt();
+                        String pathAndQuery = new String(readBytes(in), StandardCharsets.UTF_8);
+                        Upstream response = new Upstream(durationMicros, status, readBytes(in));
+                        upstream.computeIfAbsent(pathAndQuery, k -> new ArrayList<>()).add(response);
+                        upstreamByPath.computeIfAbsent(path(pathAndQuery), k -> new ArrayList<>()).add(response);
+                    } else {
+                        throw new IOException("Unknown record kind " + kind);
+                    }
+                }
+            } catch (EOFException | ZipException e) {
+                // End of capture (or of its last flushed block)
+            }
+        }
+        log.info("Loaded capture {}: {} requests, {} distinct upstream requests, started {}",
+                file, requests.size(), upstream.size(), startedAt);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static String path(String pathAndQuery) {
+        int query = pathAndQuery.indexOf('?');
+        return query < 0 ? pathAndQuery : pathAndQuery.substring(0, query);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    // Recorded responses for this exact request, in capture order
+    List<Upstream> upstream(String pathAndQuery) {
+        return upstream.get(pathAndQuery);
+    }
+
+    // Recorded responses for any request to this path, for requests the replayed build makes differently
+    List<Upstream> upstreamForPath(String path) {
+        return upstreamByPath.get(path);
+    }
+}
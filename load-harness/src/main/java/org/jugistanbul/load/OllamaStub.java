@@ -0,0 +1,194 @@
+package org.jugistanbul.load;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Stand-in for the Ollama chat API (non-streaming /api/chat, as used by LangChain4j and Spring AI) and for
+// /api/generate with context tokens. Prompt evaluation is modelled on Ollama's KV cache: text becomes one
+// pseudo-token per four characters, the model has a few slots each holding the tokens of its last sequence,
+// and only the tokens after the longest prefix shared with a slot cost prompt-eval time. The slots are
+// cleared once the model has been idle past its keep-alive (the request's keep_alive, or the default).
+// Models listed as fast models answer and evaluate prompts in fast-factor of the time.
+@RestController
+@Profile("stubs")
+public class OllamaStub {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final LatencyProfile latency;
+    private final String reply;
+    private final int[] replyTokens;
+    private final long promptEvalNanosPerToken;
+    private final Duration defaultKeepAlive;
+    private final Set<String> fastModels;
+    private final double fastFactor;
+    private final int[][] slots;
+    private final long[] slotUsed;
+    private long unloadAt;
+
+    public OllamaStub(@Value("${stub.ollama.latency.median:800ms}") Duration median,
+                      @Value("${stub.ollama.latency.p99:4s}") Duration p99,
+                      @Value("${stub.ollama.error-rate:0}") double errorRate,
+                      @Value("${stub.ollama.reply:It is a good day to stay curious. Ask me about the weather anywhere.}") String reply,
+                      @Value("${stub.ollama.prompt-eval.per-token:0ms}") Duration promptEvalPerToken,
+                      @Value("${stub.ollama.slots:4}") int slots,
+                      @Value("${stub.ollama.keep-alive:5m}") Duration keepAlive,
+                      @Value("${stub.ollama.fast-models:llama3.2:1b}") Set<String> fastModels,
+                      @Value("${stub.ollama.fast-factor:0.3}") double fastFactor) {
+        this.latency = new LatencyProfile(median, p99, errorRate);
+        this.reply = reply;
+        this.replyTokens = tokenize("assistant: " + reply + "\n");
+        this.promptEvalNanosPerToken = promptEvalPerToken.toNanos();
+        this.defaultKeepAlive = keepAlive;
+        this.fastModels = fastModels;
+        this.fastFactor = fastFactor;
+        this.slots = new int[Math.max(1, slots)][0];
+        this.slotUsed = new long[this.slots.length];
+    }
+
+    @PostMapping("/api/chat")
+    public ResponseEntity<Map<String, Object>> chat(@RequestBody Map<String, Object> request) throws InterruptedException {
+        long start = System.nanoTime();
+        StringBuilder text = new StringBuilder();
+        if (request.get("messages") instanceof List<?> messages) {
+            for (Object message : messages) {
+                if (message instanceof Map<?, ?> m && m.get("content") instanceof String content) {
+                    text.append(m.get("role")).append(": ").append(content).append('\n');
+                }
+            }
+        }
+        int[] prompt = tokenize(text);
+        double scale = scale(request.get("model"));
+        long evaluated = evaluate(prompt, request.get("keep_alive"), scale);
+        long evalNanos = System.nanoTime() - start;
+        if (!latency.apply(scale)) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "stubbed model failure"));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("model", request.getOrDefault("model", "llama3.2"));
+        response.put("created_at", Instant.now().toString());
+        response.put("message", Map.of("role", "assistant", "content", reply));
+        response.put("done_reason", "stop");
+        response.put("done", true);
+        response.put("total_duration", System.nanoTime() - start);
+        response.put("prompt_eval_count", evaluated);
+        response.put("prompt_eval_duration", evalNanos);
+        response.put("eval_count", replyTokens.length);
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/api/generate")
+    public ResponseEntity<Map<String, Object>> generate(@RequestBody Map<String, Object> request) throws InterruptedException {
+        long start = System.nanoTime();
+        int[] context = new int[0];
+        if (request.get("context") instanceof List<?> tokens) {
+            context = tokens.stream().mapToInt(token -> ((Number) token).intValue()).toArray();
+        }
+        StringBuilder text = new StringBuilder();
+        if (request.get("system") instanceof String system) text.append("system: ").append(system).append('\n');
+        text.append("user: ").append(request.getOrDefault("prompt", "")).append('\n');
+        int[] prompt = concat(context, tokenize(text));
+        double scale = scale(request.get("model"));
+        long evaluated = evaluate(prompt, request.get("keep_alive"), scale);
+        long evalNanos = System.nanoTime() - start;
+        if (!latency.apply(scale)) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "stubbed model failure"));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("model", request.getOrDefault("model", "llama3.2"));
+        response.put("created_at", Instant.now().toString());
+        response.put("response", reply);
+        response.put("done", true);
+        response.put("done_reason", "stop");
+        response.put("context", concat(prompt, replyTokens));
+        response.put("total_duration", System.nanoTime() - start);
+        response.put("prompt_eval_count", evaluated);
+        response.put("prompt_eval_duration", evalNanos);
+        response.put("eval_count", replyTokens.length);
+        return ResponseEntity.ok(response);
+    }
+
+    // Picks the slot sharing the longest prefix with the prompt (the least recently used one if none does),
+    // sleeps for the tokens after that prefix and leaves prompt + reply in the slot. Returns the evaluated count.
+    private long evaluate(int[] prompt, Object keepAlive, double scale) throws InterruptedException {
+        long evaluated;
+        synchronized (slots) {
+            long now = System.nanoTime();
+            if (now - unloadAt > 0) {
+                // Idle past keep-alive: the model was unloaded and its cache with it
+                for (int i = 0; i < slots.length; i++) slots[i] = new int[0];
+            }
+            int best = 0;
+            int bestShared = -1;
+            for (int i = 0; i < slots.length; i++) {
+                int shared = sharedPrefix(slots[i], prompt);
+                if (shared > bestShared || (shared == bestShared && slotUsed[i] < slotUsed[best])) {
+                    best = i;
+                    bestShared = shared;
+                }
+            }
+            evaluated = prompt.length - bestShared;
+            slots[best] = concat(prompt, replyTokens);
+            slotUsed[best] = now;
+            unloadAt = now + keepAlive(keepAlive).toNanos();
+        }
+        if (promptEvalNanosPerToken > 0) TimeUnit.NANOSECONDS.sleep((long) (evaluated * promptEvalNanosPerToken * scale));
+        return evaluated;
+    }
+
+    private double scale(Object model) {
+        return model != null && fastModels.contains(model.toString()) ? fastFactor : 1;
+    }
+
+    // Ollama accepts a duration string ("30m") or a number of seconds
+    private Duration keepAlive(Object value) {
+        if (value instanceof Number seconds) return Duration.ofSeconds(seconds.longValue());
+        if (value instanceof String text && !text.isBlank()) {
+            String unit = text.replaceAll("[0-9.]", "");
+            double amount = Double.parseDouble(text.replaceAll("[^0-9.]", ""));
+            long millis = switch (unit) {
+                case "ms" -> (long) amount;
+                case "s", "" -> (long) (amount * 1_000);
+                case "m" -> (long) (amount * 60_000);
+                case "h" -> (long) (amount * 3_600_000);
+                default -> defaultKeepAlive.toMillis();
+            };
+            return Duration.ofMillis(millis);
+        }
+        return defaultKeepAlive;
+    }
+
+    private static int sharedPrefix(int[] a, int[] b) {
+        int mismatch = Arrays.mismatch(a, b);
+        return mismatch < 0 ? a.length : mismatch;
+    }
+
+    private static int[] tokenize(CharSequence text) {
+        int[] tokens = new int[(text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN];
+        for (int i = 0; i < tokens.length; i++) {
+            int from = i * CHARS_PER_TOKEN;
+            tokens[i] = text.subSequence(from, Math.min(text.length(), from + CHARS_PER_TOKEN)).toString().hashCode();
+        }
+        return tokens;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+package org.jugistanbul.load;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Stand-in for the Open-Meteo forecast and geocoding APIs. Values are derived from the request
+// (coordinates, city name), so the same request always gets the same answer.
+@RestController
+@Profile("stubs")
+public class OpenMeteoStub {
+
+    private final LatencyProfile forecastLatency;
+    private final LatencyProfile geocodingLatency;
+
+    public OpenMeteoStub(@Value("${stub.open-meteo.forecast.latency.median:60ms}") Duration forecastMedian,
+                         @Value("${stub.open-meteo.forecast.latency.p99:400ms}") Duration forecastP99,
+                         @Value("${stub.open-meteo.forecast.error-rate:0}") double forecastErrorRate,
+                         @Value("${stub.open-meteo.geocoding.latency.median:40ms}") Duration geocodingMedian,
+                         @Value("${stub.open-meteo.geocoding.latency.p99:300ms}") Duration geocodingP99,
+                         @Value("${stub.open-meteo.geocoding.error-rate:0}") double geocodingErrorRate) {
+        this.forecastLatency = new LatencyProfile(forecastMedian, forecastP99, forecastErrorRate);
+        this.geocodingLatency = new LatencyProfile(geocodingMedian, geocodingP99, geocodingErrorRate);
+    }
+
+    @GetMapping("/v1/forecast")
+    public ResponseEntity<Map<String, Object>> forecast(@RequestParam("latitude") double latitude,
+                                                        @RequestParam("longitude") double longitude,
+                                                        @RequestParam(value = "current", defaultValue = "") String current,
+                                                        @RequestParam(value = "hourly", defaultValue = "") String hourly,
+                                                        @RequestParam(value = "forecast_days", defaultValue = "7") int forecastDays)
+            throws InterruptedException {
+        if (!forecastLatency.apply()) return failure();
+        if (!hourly.isBlank()) return ResponseEntity.ok(hourly(latitude, longitude, hourly, forecastDays));
+        Map<String, Object> units = new LinkedHashMap<>();
+        Map<String, Object> values = new LinkedHashMap<>();
+        units.put("time", "iso8601");
+        units.put("interval", "seconds");
+        values.put("time", LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS).toString());
+        values.put("interval", 900);
+        for (String variable : current.split(",")) {
+            if (variable.isBlank()) continue;
+            units.put(variable, unitOf(variable));
+            values.put(variable, valueOf(variable, latitude, longitude));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("latitude", latitude);
+        response.put("longitude", longitude);
+        response.put("generationtime_ms", 0.05);
+        response.put("utc_offset_seconds", 0);
+        response.put("timezone", "GMT");
+        response.put("timezone_abbreviation", "GMT");
+        response.put("elevation", Math.round(Math.abs(latitude * longitude)) % 1500);
+        response.put("current_units", units);
+        response.put("current", values);
+        return ResponseEntity.ok(response);
+    }
+
+    // Hourly series from midnight UTC today, with epoch-second timestamps (timeformat=unixtime)
+    private static Map<String, Object> hourly(double latitude, double longitude, String hourly, int forecastDays) {
+        int hours = Math.max(1, Math.min(16, forecastDays)) * 24;
+        long midnight = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).toEpochSecond(ZoneOffset.UTC);
+        Map<String, Object> units = new LinkedHashMap<>();
+        Map<String, Object> values = new LinkedHashMap<>();
+        units.put("time", "unixtime");
+        long[] time = new long[hours];
+        for (int i = 0; i < hours; i++) time[i] = midnight + i * 3600L;
+        values.put("time", time);
+        for (String variable : hourly.split(",")) {
+            if (variable.isBlank()) continue;
+            double[] column = new double[hours];
+            for (int i = 0; i < hours; i++) {
+                // Daily cycle around the location's base value, warmest mid-afternoon
+                double base = valueOf(variable, latitude, longitude);
+                double cycle = Math.sin((i % 24 - 9) * Math.PI / 12);
+                column[i] = variable.startsWith("precipitation") ? base : round(base + cycle * base * 0.2, 1);
+            }
+            units.put(variable, unitOf(variable));
+            values.put(variable, column);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("latitude", latitude);
+        response.put("longitude", longitude);
+        response.put("generationtime_ms", 0.05);
+        response.put("utc_offset_seconds", 0);
+        response.put("timezone", "GMT");
+        response.put("hourly_units", units);
+        response.put("hourly", values);
+        return response;
+    }
+
+    @GetMapping("/v1/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestParam("name") String name) throws InterruptedException {
+        if (!geocodingLatency.apply()) return failure();
+        int hash = name.trim().toLowerCase().hashCode();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", Math.abs((long) hash));
+        result.put("name", name.trim());
+        result.put("latitude", round(-60 + Math.floorMod(hash, 13_000) / 100.0, 4));
+        result.put("longitude", round(-180 + Math.floorMod(hash >>> 7, 36_000) / 100.0, 4));
+        result.put("country", "Stubland");
+        result.put("country_code", "SL");
+        return ResponseEntity.ok(Map.of("results", List.of(result), "generationtime_ms", 0.05));
+    }
+
+    private static String unitOf(String variable) {
+        if (variable.startsWith("temperature") || variable.startsWith("apparent_temperature")) return "°C";
+        if (variable.startsWith("wind_speed")) return "km/h";
+        if (variable.startsWith("precipitation") || variable.equals("rain")) return "mm";
+        if (variable.startsWith("relative_humidity")) return "%";
+        return "";
+    }
+
+    private static double valueOf(String variable, double latitude, double longitude) {
+        // Deterministic but varied per location and variable
+        double seed = Math.abs(Math.sin(latitude * 12.9898 + longitude * 78.233 + variable.hashCode()));
+        if (variable.startsWith("temperature") || variable.startsWith("apparent_temperature")) {
+            return round(30 - Math.abs(latitude) / 3 + seed * 8, 1);
+        }
+        if (variable.startsWith("wind_speed")) return round(seed * 35, 1);
+        if (variable.startsWith("precipitation") || variable.equals("rain")) return seed > 0.7 ? round(seed * 4, 1) : 0.0;
+        if (variable.startsWith("relative_humidity")) return Math.round(30 + seed * 65);
+        return round(seed * 100, 1);
+    }
+
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+
+    private static ResponseEntity<Map<String, Object>> failure() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", true, "reason", "stubbed upstream failure"));
+    }
+}
@@ -0,0 +1,167 @@
+package org.jugistanbul.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Re-drives a captured request stream against weather-mcp-server and reports latency per JSON-RPC method
+// (and per tool for tools/call). replay.speed 1 keeps the captured arrival times, 2 halves the gaps,
+// and 0 sends as fast as replay.max-in-flight allows. Latency is measured from the scheduled time.
+@Component
+@Profile("replay")
+public class ReplayRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayRunner.class);
+
+    private final ObjectMapper objectMapper;
+    private final McpCapture capture;
+    private final CapturedUpstream upstream;
+    private final URI target;
+    private final double speed;
+    private final int maxInFlight;
+    private final Duration requestTimeout;
+    private final Path reportFile;
+    private final String label;
+    private final ConfigurableApplicationContext context;
+    private final Map<String, ScenarioStats> stats = new ConcurrentHashMap<>();
+
+    public ReplayRunner(ObjectMapper objectMapper, McpCapture capture, CapturedUpstream upstream,
+                        ConfigurableApplicationContext context,
+                        @Value("${replay.target:http://localhost:8081}") URI target,
+                        @Value("${replay.speed:1}") double speed,
+                        @Value("${replay.max-in-flight:64}") int maxInFlight,
+                        @Value("${replay.request-timeout:30s}") Duration requestTimeout,
+                        @Value("${replay.report:target/replay-report.json}") Path reportFile,
+                        @Value("${replay.label:}") String label) {
+        this.objectMapper = objectMapper;
+        this.capture = capture;
+        this.upstream = upstream;
+        this.context = context;
+        this.target = target.resolve("/mcp/messages");
+        this.speed = speed;
+        this.maxInFlight = maxInFlight;
+        this.requestTimeout = requestTimeout;
+        this.reportFile = reportFile;
+        this.label = label;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        log.info("Replaying {} requests from {} against {} at speed {}",
+                capture.requests().size(), capture.file(), target, speed > 0 ? speed : "max");
+
+        // The capture starts when the server does; replay from its first request
+        long firstOffsetMicros = capture.requests().isEmpty() ? 0 : capture.requests().get(0).offsetMicros();
+        long start = System.nanoTime();
+        for (McpCapture.Request captured : capture.requests()) {
+            String key = key(captured.body());
+            ScenarioStats scenario = stats.computeIfAbsent(key, k -> new ScenarioStats(start));
+            long due;
+            if (speed > 0) {
+                due = start + (long) (TimeUnit.MICROSECONDS.toNanos(captured.offsetMicros() - firstOffsetMicros) / speed);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+                // Open loop: a request that finds no free slot is dropped, not delayed
+                if (!inFlight.tryAcquire()) {
+                    scenario.dropped(due);
+                    continue;
+                }
+            } else {
+                inFlight.acquire();
+                due = System.nanoTime();
+            }
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(captured.body()))
+                    .build();
+            scenario.sent(due);
+            long scheduled = due;
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                inFlight.release();
+                if (error == null && response.statusCode() / 100 == 2 && !isRpcError(response.body())) {
+                    scenario.succeeded(scheduled);
+                } else {
+                    scenario.failed(scheduled);
+                }
+            });
+        }
+        // Wait for the tail to finish (or time out)
+        inFlight.tryAcquire(maxInFlight, requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> methods = new TreeMap<>();
+        stats.forEach((key, scenario) -> methods.put(key, scenario.report(seconds)));
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("capture", capture.file().toString());
+        config.put("target", target.toString());
+        config.put("speed", speed);
+        config.put("maxInFlight", maxInFlight);
+        config.put("requests", capture.requests().size());
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", label);
+        report.put("finishedAt", Instant.now().toString());
+        report.put("durationSeconds", Math.round(seconds * 1000) / 1000.0);
+        report.put("config", config);
+        report.put("upstream", upstream.report());
+        report.put("methods", methods);
+        if (reportFile.getParent() != null) Files.createDirectories(reportFile.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+        log.info("Replay report written to {}", reportFile.toAbsolutePath());
+        // The captured upstream is only needed while replaying
+        SpringApplication.exit(context);
+    }
+
+    // "tools/call:<tool name>" for tool calls, the method otherwise
+    private String key(String body) {
+        try {
+            JsonNode request = objectMapper.readTree(body);
+            String method = request.path("method").asText("unknown");
+            String tool = request.path("params").path("name").asText("");
+            return "tools/call".equals(method) && !tool.isEmpty() ? method + ":" + tool : method;
+        } catch (IOException e) {
+            return "unparseable";
+        }
+    }
+
+    private boolean isRpcError(String body) {
+        if (body == null || body.isEmpty()) return false;
+        try {
+            JsonNode error = objectMapper.readTree(body).path("error");
+            return !error.isMissingNode() && !error.isNull();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.jugistanbul.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Outcome counters and a latency histogram (microsecond resolution) for one scenario.
+// Only events that were due after warm-up count, so warm-up requests finishing late do not leak in.
+final class ScenarioStats {
+
+    private final long measureFrom;
+    private final Recorder latency = new Recorder(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    ScenarioStats(long measureFrom) {
+        this.measureFrom = measureFrom;
+    }
+
+    void sent(long due) {
+        if (measured(due)) sent.increment();
+    }
+
+    void succeeded(long due) {
+        if (!measured(due)) return;
+        succeeded.increment();
+        latency.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due)));
+    }
+
+    void failed(long due) {
+        if (measured(due)) failed.increment();
+    }
+
+    // Due but not sent because the in-flight limit (or every session) was busy
+    void dropped(long due) {
+        if (measured(due)) dropped.increment();
+    }
+
+    private boolean measured(long due) {
+        return due - measureFrom >= 0;
+    }
+
+    Map<String, Object> report(double seconds) {
+        long ok = succeeded.sum();
+        long errors = failed.sum();
+        long skipped = dropped.sum();
+        long attempted = sent.sum() + skipped;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("requests", attempted);
+        report.put("succeeded", ok);
+        report.put("errors", errors);
+        report.put("dropped", skipped);
+        report.put("errorRate", attempted == 0 ? 0.0 : round((double) (errors + skipped) / attempted));
+        report.put("throughputPerSecond", seconds <= 0 ? 0.0 : round(ok / seconds));
+        report.put("latencyMillis", latencyReport(latency.getIntervalHistogram()));
+        return report;
+    }
+
+    static Map<String, Object> latencyReport(Histogram histogram) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        boolean empty = histogram.getTotalCount() == 0;
+        report.put("p50", empty ? 0.0 : millis(histogram.getValueAtPercentile(50)));
+        report.put("p99", empty ? 0.0 : millis(histogram.getValueAtPercentile(99)));
+        report.put("p999", empty ? 0.0 : millis(histogram.getValueAtPercentile(99.9)));
+        report.put("max", empty ? 0.0 : millis(histogram.getMaxValue()));
+        report.put("mean", empty ? 0.0 : round(histogram.getMean() / 1000));
+        return report;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,67 @@
+package org.jugistanbul.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Reads step-05-mcp's session and heap gauges from /actuator/metrics while the sessions are still open,
+// so a density run can tell whether the target session count fits the server's (fixed) heap.
+final class ServerMetrics {
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final URI baseUrl;
+
+    ServerMetrics(HttpClient client, ObjectMapper objectMapper, URI baseUrl) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+    }
+
+    // -1 for figures the server does not expose
+    Map<String, Object> sample() {
+        double sessions = value("chat.websocket.sessions", null);
+        double heapUsed = value("jvm.memory.used", "area:heap");
+        double heapMax = value("jvm.memory.max", "area:heap");
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("sessions", (long) sessions);
+        report.put("estimatedBytesPerSession", (long) value("chat.websocket.memory.per-session", null));
+        report.put("heapUsedMiB", mib(heapUsed));
+        report.put("heapMaxMiB", mib(heapMax));
+        report.put("nonHeapUsedMiB", mib(value("jvm.memory.used", "area:nonheap")));
+        // Includes everything else on the heap, so an upper bound on what a session costs
+        report.put("heapBytesPerSession", sessions > 0 && heapUsed >= 0 ? (long) (heapUsed / sessions) : -1);
+        return report;
+    }
+
+    private double value(String metric, String tag) {
+        String path = "/actuator/metrics/" + metric + (tag != null ? "?tag=" + tag : "");
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(baseUrl.resolve(path))
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) return -1;
+            for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+                if ("VALUE".equals(measurement.path("statistic").asText())) return measurement.path("value").asDouble();
+            }
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static double mib(double bytes) {
+        return bytes < 0 ? -1 : Math.round(bytes / (1024 * 1024) * 10) / 10.0;
+    }
+}
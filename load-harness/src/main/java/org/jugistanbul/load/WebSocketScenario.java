@@ -0,0 +1,214 @@
+package org.jugistanbul.load;
+
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Opens many chat sessions at a fixed connection rate and sends chat messages across the open
+// sessions at a fixed aggregate rate. A session has at most one message awaiting its reply, and
+// the reply is the next complete text frame (messages should produce exactly one reply frame).
+// Session and connect figures cover the whole run since connecting mostly happens during warm-up.
+// Without messages the sessions are only held open: a density run, where the server's session and heap
+// gauges are read just before the sessions are closed.
+final class WebSocketScenario {
+
+    private final class Session implements WebSocket.Listener {
+        final long connectDue;
+        final StringBuilder frame = new StringBuilder();
+        final AtomicLong pendingSince = new AtomicLong();
+        volatile WebSocket socket;
+        boolean welcomed;
+
+        Session(long connectDue) {
+            this.connectDue = connectDue;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            socket = webSocket;
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            frame.append(data);
+            if (last) {
+                frame.setLength(0);
+                long now = System.nanoTime();
+                if (!welcomed) {
+                    // The server greets every new session; that frame marks the session as usable
+                    welcomed = true;
+                    connectLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(now - connectDue));
+                    opened.increment();
+                    peakOpen.accumulateAndGet(open.size() + 1, Math::max);
+                    open.add(this);
+                } else {
+                    long since = pendingSince.getAndSet(0);
+                    if (since != 0) stats.succeeded(since);
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            lost(true);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            lost(true);
+        }
+
+        void lost(boolean unexpected) {
+            if (!open.remove(this) && !welcomed) connectFailed.increment();
+            long since = pendingSince.getAndSet(0);
+            if (since != 0) stats.failed(since);
+            if (unexpected && !closing) closedUnexpectedly.increment();
+        }
+    }
+
+    private final HttpClient client;
+    private final URI uri;
+    private final int sessions;
+    private final double connectRate;
+    private final double messageRate;
+    private final long replyTimeoutNanos;
+    private final List<String> messages;
+    private final ScenarioStats stats;
+    private final Recorder connectLatency = new Recorder(3);
+    private final List<Session> open = new CopyOnWriteArrayList<>();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder connectFailed = new LongAdder();
+    private final LongAdder closedUnexpectedly = new LongAdder();
+    private final AtomicInteger peakOpen = new AtomicInteger();
+    private volatile boolean closing;
+    // null when the server's gauges are not read
+    private final ServerMetrics serverMetrics;
+    private volatile Map<String, Object> server;
+
+    WebSocketScenario(HttpClient client, URI uri, int sessions, double connectRate, double messageRate,
+                      Duration replyTimeout, List<String> messages, long measureFrom, ServerMetrics serverMetrics) {
+        this.stats = new ScenarioStats(measureFrom);
+        this.client = client;
+        this.uri = uri;
+        this.sessions = sessions;
+        this.connectRate = connectRate;
+        this.messageRate = messageRate;
+        this.replyTimeoutNanos = replyTimeout.toNanos();
+        this.messages = messages;
+        this.serverMetrics = serverMetrics;
+    }
+
+    void run(long startNanos, long endNanos) {
+        Thread connector = Thread.ofVirtual().name("ws-connector").start(() -> connect(startNanos, endNanos));
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicInteger nextMessage = new AtomicInteger();
+        Arrivals.run(messageRate, startNanos, endNanos, due -> {
+            Session session = claimIdle(cursor, due);
+            if (session == null) {
+                stats.dropped(due);
+                return;
+            }
+            String message = messages.get(Math.floorMod(nextMessage.getAndIncrement(), messages.size()));
+            stats.sent(due);
+            session.socket.sendText(message, true).exceptionally(error -> {
+                if (session.pendingSince.compareAndSet(due, 0)) stats.failed(due);
+                return null;
+            });
+        });
+        // Idle sessions are held until the end of the run
+        long left;
+        while ((left = endNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(left);
+        }
+        connector.interrupt();
+        // Give the last replies a chance, then count whatever is still outstanding as failed
+        long deadline = System.nanoTime() + replyTimeoutNanos;
+        while (System.nanoTime() - deadline < 0 && open.stream().anyMatch(s -> s.pendingSince.get() != 0)) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (serverMetrics != null) server = serverMetrics.sample();
+        closing = true;
+        for (Session session : open) {
+            long since = session.pendingSince.getAndSet(0);
+            if (since != 0) stats.failed(since);
+            session.socket.sendClose(WebSocket.NORMAL_CLOSURE, "load test finished");
+        }
+    }
+
+    private void connect(long startNanos, long endNanos) {
+        long connectEnd = Math.min(endNanos, startNanos + (long) (sessions / connectRate * 1e9));
+        Arrivals.run(connectRate, startNanos, connectEnd, due -> {
+            Session session = new Session(due);
+            client.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofNanos(replyTimeoutNanos))
+                    .buildAsync(uri, session)
+                    .exceptionally(error -> {
+                        connectFailed.increment();
+                        return null;
+                    });
+        });
+    }
+
+    // Round-robin over open sessions for one that has no reply pending; a reply that is overdue
+    // is counted as failed and frees its session
+    private Session claimIdle(AtomicInteger cursor, long due) {
+        int size = open.size();
+        for (int i = 0; i < size; i++) {
+            Session session;
+            try {
+                session = open.get(Math.floorMod(cursor.getAndIncrement(), size));
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            }
+            long since = session.pendingSince.get();
+            if (since != 0 && due - since > replyTimeoutNanos && session.pendingSince.compareAndSet(since, 0)) {
+                stats.failed(since);
+                since = 0;
+            }
+            if (since == 0 && session.pendingSince.compareAndSet(0, due)) return session;
+        }
+        return null;
+    }
+
+    Map<String, Object> report(double seconds) {
+        Map<String, Object> report = stats.report(seconds);
+        Map<String, Object> sessionReport = new LinkedHashMap<>();
+        sessionReport.put("target", sessions);
+        sessionReport.put("opened", opened.sum());
+        sessionReport.put("connectFailed", connectFailed.sum());
+        sessionReport.put("closedUnexpectedly", closedUnexpectedly.sum());
+        sessionReport.put("peakOpen", peakOpen.get());
+        sessionReport.put("connectLatencyMillis", ScenarioStats.latencyReport(connectLatency.getIntervalHistogram()));
+        report.put("sessions", sessionReport);
+        if (server != null) {
+            Map<String, Object> serverReport = new LinkedHashMap<>(server);
+            // Every target session opened and stayed open, and the server still counted them all at the end
+            serverReport.put("fits", opened.sum() >= sessions && connectFailed.sum() == 0
+                    && closedUnexpectedly.sum() == 0 && (long) server.get("sessions") >= sessions);
+            report.put("server", serverReport);
+        }
+        return report;
+    }
+}
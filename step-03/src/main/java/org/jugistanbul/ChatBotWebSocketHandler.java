@@ -11,9 +11,11 @@ import org.springframework.lang.NonNull;
 public class ChatBotWebSocketHandler extends TextWebSocketHandler {
 
     private final ChatBot chatBot;
+    private final LlmAdmissionController admissionController;
 
-    public ChatBotWebSocketHandler(ChatBot chatBot) {
+    public ChatBotWebSocketHandler(ChatBot chatBot, LlmAdmissionController admissionController) {
         this.chatBot = chatBot;
+        this.admissionController = admissionController;
     }
 
     @Override
@@ -24,7 +26,13 @@ public class ChatBotWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     protected void handleTextMessage(@NonNull WebSocketSession session, @NonNull TextMessage message) throws Exception {
-        String response = chatBot.chat(message.getPayload());
+        String payload = message.getPayload();
+        String response;
+        try {
+            response = admissionController.call(session.getId(), payload, () -> chatBot.chat(payload));
+        } catch (LlmAdmissionController.AdmissionRejectedException e) {
+            response = e.getMessage();
+        }
         if (response != null) {
             session.sendMessage(new TextMessage(response));
         }
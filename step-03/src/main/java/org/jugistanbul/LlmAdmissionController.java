@@ -0,0 +1,177 @@
+package org.jugistanbul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Bounds the number of concurrent chat model calls. Waiting requests are queued per session and
+// served round-robin, short (interactive) prompts ahead of long ones, and rejected once their wait budget is spent.
+@Component
+public class LlmAdmissionController {
+
+    private static final String METRIC_PREFIX = "chat.admission";
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final int maxQueuedPerSession;
+    private final int shortMessageChars;
+    private final long maxWaitNanos;
+
+    // Index 0 = interactive, 1 = bulk; each map keeps one FIFO per session in round-robin order
+    private final List<LinkedHashMap<String, ArrayDeque<Ticket>>> queues = List.of(new LinkedHashMap<>(), new LinkedHashMap<>());
+    private int active;
+    private int queued;
+    // Grant a bulk request after this many consecutive interactive grants so long prompts are not starved
+    private static final int INTERACTIVE_BURST = 4;
+    private int interactiveStreak;
+
+    private final Timer[] waitTimers;
+    private final MeterRegistry meterRegistry;
+
+    public LlmAdmissionController(MeterRegistry meterRegistry,
+                                  @Value("${chat.admission.max-concurrent:2}") int maxConcurrent,
+                                  @Value("${chat.admission.max-queued:64}") int maxQueued,
+                                  @Value("${chat.admission.max-queued-per-session:4}") int maxQueuedPerSession,
+                                  @Value("${chat.admission.short-message-chars:200}") int shortMessageChars,
+                                  @Value("${chat.admission.max-wait:10s}") Duration maxWait) {
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxQueuedPerSession = maxQueuedPerSession;
+        this.shortMessageChars = shortMessageChars;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.waitTimers = new Timer[]{
+                Timer.builder(METRIC_PREFIX + ".wait").tag("priority", "interactive").register(meterRegistry),
+                Timer.builder(METRIC_PREFIX + ".wait").tag("priority", "bulk").register(meterRegistry)
+        };
+        meterRegistry.gauge(METRIC_PREFIX + ".queue.depth", this, LlmAdmissionController::queueDepth);
+        meterRegistry.gauge(METRIC_PREFIX + ".active", this, LlmAdmissionController::activeCalls);
+    }
+
+    public <T> T call(String sessionKey, String message, Supplier<T> modelCall) {
+        acquire(sessionKey, message);
+        try {
+            return modelCall.get();
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire(String sessionKey, String message) {
+        int priority = (message == null || message.length() <= shortMessageChars) ? 0 : 1;
+        long start = System.nanoTime();
+        Ticket ticket;
+        synchronized (this) {
+            if (active < maxConcurrent && queued == 0) {
+                active++;
+                waitTimers[priority].record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (queued >= maxQueued) {
+                throw reject("queue_full", "The assistant is busy right now, please try again in a moment.");
+            }
+            ArrayDeque<Ticket> sessionQueue = queues.get(priority).computeIfAbsent(sessionKey, _ -> new ArrayDeque<>());
+            if (sessionQueue.size() >= maxQueuedPerSession) {
+                throw reject("session_limit", "You already have several questions waiting, please wait for the answers.");
+            }
+            ticket = new Ticket(sessionKey, priority);
+            sessionQueue.add(ticket);
+            queued++;
+        }
+        try {
+            ticket.granted.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            synchronized (this) {
+                // The grant may have raced with the timeout; if so, keep the slot
+                if (!ticket.granted.isDone()) {
+                    dequeue(ticket);
+                    throw reject("deadline", "The assistant is busy right now, please try again in a moment.");
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        waitTimers[priority].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void release() {
+        Ticket next = pollNext();
+        if (next == null) {
+            active--;
+            return;
+        }
+        // Hand the slot over directly so newcomers cannot jump the queue
+        queued--;
+        next.granted.complete(null);
+    }
+
+    private Ticket pollNext() {
+        int first = (interactiveStreak >= INTERACTIVE_BURST && !queues.get(1).isEmpty()) ? 1 : 0;
+        for (int i = 0; i < 2; i++) {
+            int priority = (first + i) % 2;
+            Iterator<Map.Entry<String, ArrayDeque<Ticket>>> it = queues.get(priority).entrySet().iterator();
+            if (!it.hasNext()) continue;
+            Map.Entry<String, ArrayDeque<Ticket>> head = it.next();
+            Ticket ticket = head.getValue().poll();
+            it.remove();
+            // Rotate the session to the back so every waiting session gets a turn
+            if (!head.getValue().isEmpty()) queues.get(priority).put(head.getKey(), head.getValue());
+            interactiveStreak = priority == 0 ? interactiveStreak + 1 : 0;
+            return ticket;
+        }
+        return null;
+    }
+
+    private void dequeue(Ticket ticket) {
+        ArrayDeque<Ticket> sessionQueue = queues.get(ticket.priority).get(ticket.sessionKey);
+        if (sessionQueue != null && sessionQueue.remove(ticket)) {
+            queued--;
+            if (sessionQueue.isEmpty()) queues.get(ticket.priority).remove(ticket.sessionKey);
+        }
+    }
+
+    private AdmissionRejectedException reject(String reason, String message) {
+        Counter.builder(METRIC_PREFIX + ".rejected").tag("reason", reason).register(meterRegistry).increment();
+        return new AdmissionRejectedException(message);
+    }
+
+    private synchronized int queueDepth() {
+        return queued;
+    }
+
+    private synchronized int activeCalls() {
+        return active;
+    }
+
+    private static final class Ticket {
+        final String sessionKey;
+        final int priority;
+        final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Ticket(String sessionKey, int priority) {
+            this.sessionKey = sessionKey;
+            this.priority = priority;
+        }
+    }
+
+    public static class AdmissionRejectedException extends RuntimeException {
+        public AdmissionRejectedException(String message) {
+            super(message);
+        }
+    }
+}
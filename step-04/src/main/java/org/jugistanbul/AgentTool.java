@@ -0,0 +1,19 @@
+package org.jugistanbul;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Marks a bean method as a tool the chat model may call; parameters become the tool's JSON arguments
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AgentTool {
+
+    String name() default "";
+
+    String description();
+
+    // Per-call timeout; 0 uses chat.tools.timeout
+    long timeoutMillis() default 0;
+}
@@ -1,8 +1,17 @@
 package org.jugistanbul;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
 public class AppConfig {
 
+    // Tool calls from one model response run side by side, one virtual thread each
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService toolExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
 }
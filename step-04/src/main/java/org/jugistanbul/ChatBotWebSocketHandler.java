@@ -9,9 +9,11 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 public class ChatBotWebSocketHandler extends TextWebSocketHandler {
 
     private final ChatService chatService;
+    private final LlmAdmissionController admissionController;
 
-    public ChatBotWebSocketHandler(ChatService chatService) {
+    public ChatBotWebSocketHandler(ChatService chatService, LlmAdmissionController admissionController) {
         this.chatService = chatService;
+        this.admissionController = admissionController;
     }
 
     @Override
@@ -25,7 +27,13 @@ public class ChatBotWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String response = chatService.chat(message.getPayload());
+        String payload = message.getPayload();
+        String response;
+        try {
+            response = admissionController.call(session.getId(), payload, () -> chatService.chat(payload));
+        } catch (LlmAdmissionController.AdmissionRejectedException e) {
+            response = e.getMessage();
+        }
         session.sendMessage(new TextMessage(response));
     }
 }
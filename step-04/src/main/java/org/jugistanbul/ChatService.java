@@ -1,23 +1,82 @@
 package org.jugistanbul;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 public class ChatService {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+    private static final String TOOL_LIMIT_REPLY = "Sorry, I could not finish looking that up. Please try again.";
+
     private final ChatClient chatClient;
+    private final ToolRegistry toolRegistry;
+    private final ParallelToolExecutor toolExecutor;
+    private final int maxToolRounds;
 
-    public ChatService(ChatClient.Builder builder) {
+    public ChatService(ChatClient.Builder builder, ToolRegistry toolRegistry, ParallelToolExecutor toolExecutor,
+                       @Value("${chat.tools.max-rounds:5}") int maxToolRounds) {
         this.chatClient = builder
-                .defaultSystem("You are a helpful bot that helps users with recommendations about their location.")
+                .defaultSystem("""
+                    You are a helpful bot that helps users with recommendations about their location.
+                    You can get their location and extract the latitude and longitude.
+                    You can get the current weather for any latitude and longitude.
+                """)
                 .build();
+        this.toolRegistry = toolRegistry;
+        this.toolExecutor = toolExecutor;
+        this.maxToolRounds = maxToolRounds;
     }
 
     public String chat(String userMessage) {
-        return chatClient.prompt()
-                .user(userMessage)
+        // Tool calls are proxied back to us instead of being executed one by one inside the model client
+        OllamaOptions options = new OllamaOptions();
+        options.setFunctionCallbacks(toolRegistry.callbacks());
+        options.setProxyToolCalls(true);
+
+        List<Message> conversation = new ArrayList<>();
+        conversation.add(new UserMessage(userMessage));
+        for (int round = 0; ; round++) {
+            AssistantMessage reply = chatClient.prompt()
+                    .messages(conversation)
+                    .options(options)
+                    .call()
+                    .chatResponse()
+                    .getResult()
+                    .getOutput();
+            if (!reply.hasToolCalls()) {
+                return reply.getContent();
+            }
+            if (round == maxToolRounds) {
+                return finalAnswer(conversation);
+            }
+            conversation.add(reply);
+            conversation.add(toolExecutor.execute(reply.getToolCalls()));
+        }
+    }
+
+    // The model still wants tools after max-rounds: a tool-call message has no text for the user, so ask once
+    // more without tools for an answer from the results gathered so far
+    private String finalAnswer(List<Message> conversation) {
+        log.warn("Tool round limit ({}) reached, answering without tools", maxToolRounds);
+        AssistantMessage reply = chatClient.prompt()
+                .messages(conversation)
+                .options(new OllamaOptions())
                 .call()
-                .content();
+                .chatResponse()
+                .getResult()
+                .getOutput();
+        String content = reply.getContent();
+        return content == null || content.isBlank() ? TOOL_LIMIT_REPLY : content;
     }
 }
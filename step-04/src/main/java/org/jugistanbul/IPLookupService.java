@@ -0,0 +1,22 @@
+package org.jugistanbul;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+@Service
+public class IPLookupService {
+
+    private final RestClient restClient;
+
+    public IPLookupService(RestClient.Builder restClientBuilder) {
+        this.restClient = restClientBuilder.baseUrl("http://ip-api.com").build();
+    }
+
+    @AgentTool(name = "getLocation", description = "Get the user's location (city, country, latitude and longitude) based on public IP")
+    public String getLocation() {
+        return restClient.get()
+                .uri("/json")
+                .retrieve()
+                .body(String.class);
+    }
+}
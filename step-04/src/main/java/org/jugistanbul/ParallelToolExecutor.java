@@ -0,0 +1,79 @@
+package org.jugistanbul;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Runs all tool calls of one model response concurrently and returns their results in request order,
+// so a turn costs as long as its slowest tool rather than the sum of all of them.
+@Component
+public class ParallelToolExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelToolExecutor.class);
+
+    private final ToolRegistry toolRegistry;
+    private final ExecutorService toolExecutor;
+    private final long defaultTimeoutMillis;
+
+    public ParallelToolExecutor(ToolRegistry toolRegistry, ExecutorService toolExecutor,
+                                @Value("${chat.tools.timeout:5s}") Duration defaultTimeout) {
+        this.toolRegistry = toolRegistry;
+        this.toolExecutor = toolExecutor;
+        this.defaultTimeoutMillis = defaultTimeout.toMillis();
+    }
+
+    public ToolResponseMessage execute(List<AssistantMessage.ToolCall> toolCalls) {
+        long start = System.nanoTime();
+        List<Future<String>> pending = new ArrayList<>(toolCalls.size());
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            ToolRegistry.MethodToolCallback tool = toolRegistry.get(toolCall.name());
+            pending.add(tool == null ? null : toolExecutor.submit(() -> tool.call(toolCall.arguments())));
+        }
+
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), await(toolCall, pending.get(i), start)));
+        }
+        log.debug("Executed {} tool call(s) in {} ms", toolCalls.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return new ToolResponseMessage(responses);
+    }
+
+    // Each tool's timeout runs from when all calls were submitted, not from when its result is awaited
+    private String await(AssistantMessage.ToolCall toolCall, Future<String> result, long submittedAt) {
+        if (result == null) return error("Unknown tool: " + toolCall.name());
+        ToolRegistry.MethodToolCallback tool = toolRegistry.get(toolCall.name());
+        long timeout = tool.timeoutMillis() > 0 ? tool.timeoutMillis() : defaultTimeoutMillis;
+        long deadline = submittedAt + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            // Deadlines share the submission time, so the turn waits at most for the longest timeout, not their sum
+            return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            return error("Tool " + toolCall.name() + " timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            return error("Tool " + toolCall.name() + " was interrupted");
+        } catch (ExecutionException e) {
+            log.warn("Tool {} failed", toolCall.name(), e.getCause());
+            return error("Tool " + toolCall.name() + " failed");
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message.replace("\"", "'") + "\"}";
+    }
+}
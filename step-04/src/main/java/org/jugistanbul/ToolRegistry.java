@@ -0,0 +1,143 @@
+package org.jugistanbul;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Collects @AgentTool methods from all beans once the context is up and exposes them as function callbacks
+@Component
+public class ToolRegistry implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ToolRegistry.class);
+
+    private final ConfigurableListableBeanFactory beanFactory;
+    private final ObjectMapper objectMapper;
+    private final Map<String, MethodToolCallback> tools = new LinkedHashMap<>();
+
+    public ToolRegistry(ConfigurableListableBeanFactory beanFactory, ObjectMapper objectMapper) {
+        this.beanFactory = beanFactory;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String beanName : beanFactory.getBeanNamesForType(Object.class, false, false)) {
+            Class<?> type = beanFactory.getType(beanName);
+            if (type == null) continue;
+            Map<Method, AgentTool> methods = MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+                    (MethodIntrospector.MetadataLookup<AgentTool>) method ->
+                            AnnotatedElementUtils.findMergedAnnotation(method, AgentTool.class));
+            if (methods.isEmpty()) continue;
+            Object bean = beanFactory.getBean(beanName);
+            methods.forEach((method, annotation) -> {
+                String name = annotation.name().isEmpty() ? method.getName() : annotation.name();
+                tools.put(name, new MethodToolCallback(name, annotation, bean, method));
+                log.info("Registered tool: {}", name);
+            });
+        }
+    }
+
+    public List<FunctionCallback> callbacks() {
+        return List.copyOf(tools.values());
+    }
+
+    public MethodToolCallback get(String name) {
+        return tools.get(name);
+    }
+
+    public final class MethodToolCallback implements FunctionCallback {
+
+        private final String name;
+        private final AgentTool annotation;
+        private final Object bean;
+        private final Method method;
+        private final String inputSchema;
+
+        MethodToolCallback(String name, AgentTool annotation, Object bean, Method method) {
+            this.name = name;
+            this.annotation = annotation;
+            this.bean = bean;
+            this.method = method;
+            ReflectionUtils.makeAccessible(method);
+            this.inputSchema = buildSchema(method);
+        }
+
+        public long timeoutMillis() {
+            return annotation.timeoutMillis();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDescription() {
+            return annotation.description();
+        }
+
+        @Override
+        public String getInputTypeSchema() {
+            return inputSchema;
+        }
+
+        @Override
+        public String call(String functionInput) {
+            try {
+                JsonNode arguments = functionInput == null || functionInput.isBlank()
+                        ? objectMapper.createObjectNode() : objectMapper.readTree(functionInput);
+                Parameter[] parameters = method.getParameters();
+                Object[] args = new Object[parameters.length];
+                for (int i = 0; i < parameters.length; i++) {
+                    JsonNode value = arguments.get(parameters[i].getName());
+                    args[i] = value == null || value.isNull()
+                            ? null : objectMapper.convertValue(value, parameters[i].getType());
+                }
+                Object result = method.invoke(bean, args);
+                return result instanceof String text ? text : objectMapper.writeValueAsString(result);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Tool " + name + " failed", e.getCause());
+            } catch (IllegalAccessException | JsonProcessingException e) {
+                throw new IllegalStateException("Tool " + name + " failed", e);
+            }
+        }
+
+        private String buildSchema(Method method) {
+            ObjectNode schema = objectMapper.createObjectNode().put("type", "object");
+            ObjectNode properties = schema.putObject("properties");
+            ArrayNode required = schema.putArray("required");
+            for (Parameter parameter : method.getParameters()) {
+                properties.putObject(parameter.getName()).put("type", jsonType(parameter.getType()));
+                if (parameter.getType().isPrimitive()) required.add(parameter.getName());
+            }
+            return schema.toString();
+        }
+
+        private String jsonType(Class<?> type) {
+            if (type == boolean.class || type == Boolean.class) return "boolean";
+            if (type == int.class || type == long.class || type == Integer.class || type == Long.class) return "integer";
+            if (type.isPrimitive() || Number.class.isAssignableFrom(type)) return "number";
+            if (type == String.class) return "string";
+            return type.isArray() || Iterable.class.isAssignableFrom(type) ? "array" : "object";
+        }
+    }
+}
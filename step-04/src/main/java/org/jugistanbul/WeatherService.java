@@ -0,0 +1,26 @@
+package org.jugistanbul;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+@Service
+public class WeatherService {
+
+    private final RestClient restClient;
+
+    public WeatherService(RestClient.Builder restClientBuilder) {
+        this.restClient = restClientBuilder.baseUrl("https://api.open-meteo.com").build();
+    }
+
+    @AgentTool(name = "getWeather", description = "Get the current temperature, wind speed and precipitation for a latitude and longitude")
+    public String getWeather(double latitude, double longitude) {
+        return restClient.get()
+                .uri(uri -> uri.path("/v1/forecast")
+                        .queryParam("latitude", latitude)
+                        .queryParam("longitude", longitude)
+                        .queryParam("current", "temperature_2m,wind_speed_10m,precipitation")
+                        .build())
+                .retrieve()
+                .body(String.class);
+    }
+}
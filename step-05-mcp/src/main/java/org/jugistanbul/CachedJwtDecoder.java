@@ -0,0 +1,123 @@
+package org.jugistanbul;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Bearer-token decoder for the resource server: a client sends the same token on every call until it expires,
+// so the signature is verified once and the result is kept, keyed by the token's SHA-256, until the token's
+// expiry or max-ttl, whichever comes first. max-ttl bounds how long a token revoked at the issuer keeps working.
+// Rejected tokens are not cached. Keys come from JwksKeyCache, so verification itself never fetches.
+// The cache is bounded: when full, expired entries are swept (at most once a second) and otherwise new tokens
+// are verified every time rather than evicting live ones.
+@Component
+public class CachedJwtDecoder implements JwtDecoder {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private record Validated(Jwt jwt, long expiresAtMillis) {
+    }
+
+    private final NimbusJwtDecoder delegate;
+    private final Map<String, Validated> validated = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long maxTtlMillis;
+    private volatile long lastSweep;
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
+    private final Timer rejectedTimer;
+
+    public CachedJwtDecoder(JwksKeyCache keys, MeterRegistry meterRegistry,
+                            @Value("${security.jwt.issuer-uri:}") String issuer,
+                            @Value("${security.jwt.cache.max-entries:10000}") int maxEntries,
+                            @Value("${security.jwt.cache.max-ttl:5m}") Duration maxTtl) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+                Set.of(JWSAlgorithm.RS256, JWSAlgorithm.RS384, JWSAlgorithm.RS512, JWSAlgorithm.ES256), keys));
+        // Claims (expiry, not-before, issuer) are checked by the Spring validators below
+        processor.setJWTClaimsSetVerifier((claims, context) -> { });
+        this.delegate = new NimbusJwtDecoder(processor);
+        delegate.setJwtValidator(issuer.isBlank() ? JwtValidators.createDefault() : JwtValidators.createDefaultWithIssuer(issuer));
+        this.maxEntries = Math.max(0, maxEntries);
+        this.maxTtlMillis = maxTtl.toMillis();
+        this.cachedTimer = meterRegistry.timer("security.jwt.validations", "outcome", "cached");
+        this.verifiedTimer = meterRegistry.timer("security.jwt.validations", "outcome", "verified");
+        this.rejectedTimer = meterRegistry.timer("security.jwt.validations", "outcome", "rejected");
+        meterRegistry.gauge("security.jwt.cache.entries", validated, Map::size);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        String key = sha256(token);
+        long now = System.currentTimeMillis();
+        Validated hit = validated.get(key);
+        if (hit != null) {
+            if (now < hit.expiresAtMillis) {
+                cachedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return hit.jwt;
+            }
+            validated.remove(key, hit);
+        }
+        Jwt jwt;
+        try {
+            jwt = delegate.decode(token);
+        } catch (JwtException e) {
+            rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        remember(key, jwt, now);
+        verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return jwt;
+    }
+
+    private void remember(String key, Jwt jwt, long now) {
+        long expiresAt = now + maxTtlMillis;
+        Instant exp = jwt.getExpiresAt();
+        if (exp != null) expiresAt = Math.min(expiresAt, exp.toEpochMilli());
+        if (expiresAt <= now) return;
+        if (validated.size() >= maxEntries) {
+            sweep(now);
+            if (validated.size() >= maxEntries) return;
+        }
+        validated.put(key, new Validated(jwt, expiresAt));
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep;
+        long nanos = System.nanoTime();
+        if (last != 0 && nanos - last < SWEEP_INTERVAL_NANOS) return;
+        lastSweep = nanos;
+        validated.values().removeIf(entry -> entry.expiresAtMillis <= now);
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
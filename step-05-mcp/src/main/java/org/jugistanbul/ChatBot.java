@@ -6,12 +6,15 @@ import dev.langchain4j.service.spring.AiService;
 @AiService
 public interface ChatBot {
 
-        @SystemMessage("""
-                        You are a helpful, concise assistant.
-                        - Present clear, natural-language answers only.
-                        - Do not include code blocks, pseudo-code, or tool traces.
-                        - When asked for weather or location, respond briefly and avoid fabricating details.
-                        - If unsure, ask a short clarifying question.
-                        """)
+    // Also sent by OllamaContextCache, which talks to Ollama directly when session context reuse is on
+    String SYSTEM_PROMPT = """
+            You are a helpful, concise assistant.
+            - Present clear, natural-language answers only.
+            - Do not include code blocks, pseudo-code, or tool traces.
+            - When asked for weather or location, respond briefly and avoid fabricating details.
+            - If unsure, ask a short clarifying question.
+            """;
+
+    @SystemMessage(SYSTEM_PROMPT)
     String chat(String userMessage);
 }
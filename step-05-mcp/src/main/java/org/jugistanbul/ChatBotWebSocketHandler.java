@@ -1,34 +1,86 @@
 package org.jugistanbul;
 
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.net.InetSocketAddress;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class ChatBotWebSocketHandler extends TextWebSocketHandler {
 
-    private final ChatBot chatBot;
-    private final WeatherClient weatherClient;
+    private static final Logger log = LoggerFactory.getLogger(ChatBotWebSocketHandler.class);
+
+    private final ModelRouter chatModel;
+    private final ToolResultCache toolCache;
     private final IPLookupClient ipLookupClient;
+    private final LlmAdmissionController admissionController;
+    private final CityWeatherService cityWeatherService;
+    private final LocationPrefetcher locationPrefetcher;
+    private final ObservationRegistry observationRegistry;
+    private final ChatRateLimiter rateLimiter;
+    private final Journal journal;
+    private final RequestLog requestLog;
+    private final Duration llmDeadline;
+    private final Duration toolDeadline;
+    // Runs each message on a virtual thread (one at a time per session); context-propagating so its spans join the message trace
+    private final ExecutorService asyncExecutor = ContextExecutorService.wrap(
+            Executors.newVirtualThreadPerTaskExecutor(), ContextSnapshotFactory.builder().build());
+    // Interrupts messages that outlive their deadline
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("chat-deadline").daemon().factory());
+    // Message order per session; queued and in-flight messages are cancelled when the session closes
+    private final Map<String, MessageQueue> queues = new ConcurrentHashMap<>();
     private final com.google.gson.Gson gson = new com.google.gson.Gson();
     private static final String LAT_KEY = "latitude";
     private static final String LON_KEY = "longitude";
-    private static final String RESULT_KEY = "result";
-    private static final String CONTENT_KEY = "content";
-    private static final String CURRENT_KEY = "current";
-    private static final String TIME_KEY = "time";
-    private static final String TEMP_KEY = "temperature_2m";
-    private static final String WIND_KEY = "wind_speed_10m";
-    private static final String PRECIP_KEY = "precipitation";
 
-    public ChatBotWebSocketHandler(ChatBot chatBot, WeatherClient weatherClient, IPLookupClient ipLookupClient) {
-        this.chatBot = chatBot;
-        this.weatherClient = weatherClient;
+    public ChatBotWebSocketHandler(ModelRouter chatModel, ToolResultCache toolCache, IPLookupClient ipLookupClient,
+                                   LlmAdmissionController admissionController, CityWeatherService cityWeatherService,
+                                   LocationPrefetcher locationPrefetcher, ObservationRegistry observationRegistry,
+                                   ChatRateLimiter rateLimiter, Journal journal, RequestLog requestLog,
+                                   @Value("${chat.deadline.llm:60s}") Duration llmDeadline,
+                                   @Value("${chat.deadline.tool:3s}") Duration toolDeadline) {
+        this.chatModel = chatModel;
+        this.toolCache = toolCache;
         this.ipLookupClient = ipLookupClient;
+        this.admissionController = admissionController;
+        this.cityWeatherService = cityWeatherService;
+        this.locationPrefetcher = locationPrefetcher;
+        this.observationRegistry = observationRegistry;
+        this.rateLimiter = rateLimiter;
+        this.journal = journal;
+        this.requestLog = requestLog;
+        this.llmDeadline = llmDeadline;
+        this.toolDeadline = toolDeadline;
     }
 
     @Override
@@ -37,37 +89,145 @@ public class ChatBotWebSocketHandler extends TextWebSocketHandler {
         String name = (principal != null) ? principal.getName() : "User";
         String welcomeMessage = "Hi " + name + "! Welcome to your personal Spring Boot chat bot. What can I do for you?";
         session.sendMessage(new TextMessage(welcomeMessage));
+        locationPrefetcher.start();
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) {
+        chatModel.forget(session.getId());
+        // Nobody is left to read the answers: stop the model and tool calls made for this session
+        MessageQueue queue = queues.remove(session.getId());
+        if (queue != null) queue.close();
     }
 
     @Override
-    protected void handleTextMessage(@NonNull WebSocketSession session, @NonNull TextMessage message) throws Exception {
+    protected void handleTextMessage(@NonNull WebSocketSession session, @NonNull TextMessage message) {
+        String sessionId = session.getId();
+        MessageQueue queue = queues.computeIfAbsent(sessionId, _ -> new MessageQueue());
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            long start = System.nanoTime();
+            JfrEvents.WebSocketMessage event = JfrEvents.beginMessage(sessionId, message.getPayload());
+            String outcome = "error";
+            try {
+                Observation.createNotStarted("chat.websocket.message", observationRegistry)
+                        .highCardinalityKeyValue("session.id", sessionId)
+                        .observeChecked(() -> RequestDeadline.within(llmDeadline, () -> {
+                            handleChatMessage(session, message);
+                            return null;
+                        }));
+                outcome = "ok";
+            } catch (Exception e) {
+                outcome = JfrEvents.outcome(e);
+                throw e;
+            } finally {
+                JfrEvents.endMessage(event, outcome);
+                // Failures are reported (with their stack trace) where the task is run
+                requestLog.record("ws/chat", sessionId, System.nanoTime() - start, !"ok".equals(outcome), outcome,
+                        message.getPayload(), null);
+            }
+            return null;
+        });
+        CompletableFuture<Void> ended = new CompletableFuture<>();
+        CompletableFuture<Void> previous = queue.submit(task, ended);
+        if (previous == null) return;
+        asyncExecutor.execute(() -> {
+            // Messages queue behind the previous one, which may run up to its own deadline
+            previous.join();
+            ScheduledFuture<?> timeout = watchdog.schedule(() -> task.cancel(true), llmDeadline.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                task.run();
+                task.get();
+            } catch (CancellationException | InterruptedException _) {
+                // Deadline passed, or the session closed: only the first is worth reporting
+                Thread.interrupted();
+                if (session.isOpen() && !queue.isClosed()) sendQuietly(session, "The request took too long, please try again.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ChatRateLimiter.RateLimitedException) {
+                    sendQuietly(session, cause.getMessage());
+                } else if (cause instanceof RequestDeadline.DeadlineExceededException) {
+                    sendQuietly(session, "The request took too long, please try again.");
+                } else {
+                    log.warn("Chat message failed for session {}", sessionId, cause);
+                }
+            } finally {
+                timeout.cancel(false);
+                queue.finished(task);
+                ended.complete(null);
+            }
+        });
+    }
+
+    // Messages of one session run one at a time and in order, so replies and progress messages never interleave.
+    // Each waits for the previous one to end; only the deadline watchdog or the session closing cancels a message.
+    private static final class MessageQueue {
+        private final Set<FutureTask<Void>> pending = new HashSet<>();
+        private CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+        private boolean closed;
+
+        // When the previous message has ended (ended is this one's turn to complete); null once the session is closed
+        synchronized CompletableFuture<Void> submit(FutureTask<Void> task, CompletableFuture<Void> ended) {
+            if (closed) return null;
+            pending.add(task);
+            CompletableFuture<Void> previous = last;
+            last = ended;
+            return previous;
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        synchronized void finished(FutureTask<Void> task) {
+            pending.remove(task);
+        }
+
+        synchronized void close() {
+            closed = true;
+            for (FutureTask<Void> task : pending) task.cancel(true);
+            pending.clear();
+        }
+    }
+
+    private static void sendQuietly(WebSocketSession session, String text) {
+        try {
+            session.sendMessage(new TextMessage(text));
+        } catch (Exception ignored) {
+        }
+    }
+
+    // Signed-in users are limited per user across all their sessions, anonymous ones per session; both also per IP
+    private static ChatRateLimiter.Caller rateLimitCaller(WebSocketSession session) {
+        Principal principal = session.getPrincipal();
+        InetSocketAddress remote = session.getRemoteAddress();
+        String address = remote != null && remote.getAddress() != null ? remote.getAddress().getHostAddress() : null;
+        return new ChatRateLimiter.Caller(principal != null ? "user:" + principal.getName() : "ws:" + session.getId(), address);
+    }
+
+    private void handleChatMessage(WebSocketSession session, TextMessage message) throws Exception {
+        long start = System.nanoTime();
         String payload = message.getPayload() == null ? "" : message.getPayload();
         // Strip simple HTML tags that the UI may wrap around text (e.g., <p>Weather Ankara</p>)
         payload = payload.replaceAll("<[^>]+>", " ").replaceAll("\\s+", " ").trim();
         String lower = payload.toLowerCase().trim();
+        ChatRateLimiter.Caller caller = rateLimitCaller(session);
 
-        // Location info intent: report IP-based location (async)
+        // Location info intent: report IP-based location
         if (lower.contains("where is my location") || lower.matches(".*\\bmy location\\b.*") || lower.matches(".*\\bwhere am i\\b.*")) {
+            JfrEvents.intent("location");
+            rateLimiter.acquire(caller, ChatRateLimiter.Cost.TOOL, 1);
             session.sendMessage(new TextMessage("Fetching your IP location…"));
-            java.util.concurrent.CompletableFuture
-                .supplyAsync(this::handleLocationInfo)
-                .orTimeout(2, java.util.concurrent.TimeUnit.SECONDS)
-                .exceptionally(_ -> "Location service is unavailable right now.")
-                .thenAccept(result -> {
-                    try { session.sendMessage(new TextMessage(result != null ? result : "")); } catch (Exception ignored) { }
-                });
+            String result = withToolDeadline(() -> handleLocationInfo());
+            reply(session, payload, result != null ? result : "", start);
             return;
         }
-        // Near-me weather intent (async)
+        // Near-me weather intent
         if (lower.contains("near me") || lower.contains("around me") || lower.contains("weather here") || lower.contains("current weather here")) {
+            JfrEvents.intent("near-me");
+            rateLimiter.acquire(caller, ChatRateLimiter.Cost.TOOL, 1);
             session.sendMessage(new TextMessage("Fetching weather for your location…"));
-            java.util.concurrent.CompletableFuture
-                .supplyAsync(this::handleNearMeWeather)
-                .orTimeout(3, java.util.concurrent.TimeUnit.SECONDS)
-                .exceptionally(_ -> "Location service is unavailable right now.")
-                .thenAccept(result -> {
-                    try { session.sendMessage(new TextMessage(result != null ? result : "")); } catch (Exception ignored) { }
-                });
+            String result = withToolDeadline(() -> handleNearMeWeather());
+            reply(session, payload, result != null ? result : "", start);
             return;
         }
 
@@ -83,21 +243,26 @@ public class ChatBotWebSocketHandler extends TextWebSocketHandler {
                 city = payload.substring(0, payload.toLowerCase().lastIndexOf(" weather")).trim();
             }
         }
-        if (city != null) {
-            if (city.endsWith(".") || city.endsWith("!") || city.endsWith(",")) {
-                city = city.substring(0, city.length() - 1).trim();
-            }
-            if (!city.isEmpty()) {
-                String cityReq = buildJsonRpcCityRequest(city);
-                String rpc = weatherClient.callTool(cityReq);
-                String text = extractTextFromRpc(rpc);
-                String out = (text != null && !text.isEmpty()) ? ("Weather in " + city + ": " + text) : sanitizeFallback(rpc);
-                session.sendMessage(new TextMessage(out != null ? out : ""));
-                return;
-            }
+        List<String> cities = city != null ? cityWeatherService.parseCities(city) : List.of();
+        if (!cities.isEmpty()) {
+            JfrEvents.intent("city");
+            rateLimiter.acquire(caller, ChatRateLimiter.Cost.TOOL, cities.size());
+            reply(session, payload, cityWeatherService.weatherFor(ToolResultCache.Path.WEBSOCKET, cities, 5), start);
+            return;
         }
 
-        String response = chatBot.chat(payload);
+        JfrEvents.intent("llm");
+        rateLimiter.acquire(caller, ChatRateLimiter.Cost.LLM, 1);
+        String prompt = payload;
+        String response;
+        try {
+            response = admissionController.call(session.getId(), prompt,
+                    () -> Observation.createNotStarted("chat.llm", observationRegistry).observe(
+                            () -> JfrEvents.chatModel(session.getId(), prompt, () -> chatModel.chat(session.getId(), prompt))));
+        } catch (LlmAdmissionController.AdmissionRejectedException e) {
+            session.sendMessage(new TextMessage(e.getMessage()));
+            return;
+        }
         if (response != null) {
             // Sanitize model output similarly to HTTP controller
             response = response.replaceAll("<\\|[^|]*\\|>", "");
@@ -112,14 +277,35 @@ public class ChatBotWebSocketHandler extends TextWebSocketHandler {
                 }
             }
             String result = clean.toString().trim();
-            session.sendMessage(new TextMessage(result.isEmpty() ? "Request processed." : result));
+            reply(session, payload, result.isEmpty() ? "Request processed." : result, start);
         }
     }
 
+    // Location intents get the short tool budget and degrade to a fixed reply instead of failing the message
+    private String withToolDeadline(Callable<String> intent) throws InterruptedException {
+        try {
+            return RequestDeadline.within(toolDeadline, intent);
+        } catch (RequestDeadline.DeadlineExceededException _) {
+            return "Location service is unavailable right now.";
+        } catch (ChatRateLimiter.RateLimitedException e) {
+            throw e;
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            return "Location service is unavailable right now.";
+        }
+    }
+
+    private void reply(WebSocketSession session, String message, String reply, long start) throws Exception {
+        session.sendMessage(new TextMessage(reply));
+        journal.chat(session.getId(), message, reply, System.nanoTime() - start);
+    }
+
     private String handleNearMeWeather() {
+        LocationPrefetcher.Snapshot prefetched = locationPrefetcher.lookup();
         String locJson;
         try {
-            locJson = ipLookupClient.getLocation();
+            if (prefetched == null) RequestDeadline.check();
+            locJson = prefetched != null ? prefetched.locationJson() : ipLookupClient.getLocation();
         } catch (Exception _) {
             return "Location service is unavailable right now.";
         }
@@ -132,23 +318,25 @@ public class ChatBotWebSocketHandler extends TextWebSocketHandler {
         if (obj.has("lng") && !obj.get("lng").isJsonNull()) lon = obj.get("lng").getAsDouble();
         if (obj.has(LON_KEY) && !obj.get(LON_KEY).isJsonNull()) lon = obj.get(LON_KEY).getAsDouble();
         if (lat != null && lon != null) {
-            String req = buildJsonRpcCoordsRequest(lat, lon);
-            String rpc = weatherClient.callTool(req);
-            String text = extractTextFromRpc(rpc);
+            String rpc = prefetched != null ? prefetched.forecastRpc() : null;
+            String text = rpc != null ? WeatherRpcCodec.extractText(rpc)
+                    : toolCache.coordinates(ToolResultCache.Path.WEBSOCKET, lat, lon, 6);
             String cityName = null;
             if (obj.has("city") && !obj.get("city").isJsonNull()) cityName = obj.get("city").getAsString();
             if (text != null && !text.isEmpty()) {
                 return (cityName != null && !cityName.isBlank()) ? ("Weather in " + cityName + ": " + text) : text;
             }
-            return sanitizeFallback(rpc);
+            return "I’ve fetched the weather using MCP.";
         }
         return "Could not determine coordinates from IP location.";
     }
 
     private String handleLocationInfo() {
+        LocationPrefetcher.Snapshot prefetched = locationPrefetcher.lookup();
         String locJson;
         try {
-            locJson = ipLookupClient.getLocation();
+            if (prefetched == null) RequestDeadline.check();
+            locJson = prefetched != null ? prefetched.locationJson() : ipLookupClient.getLocation();
         } catch (Exception _) {
             return "Location service is unavailable right now.";
         }
@@ -165,100 +353,15 @@ public class ChatBotWebSocketHandler extends TextWebSocketHandler {
         StringBuilder sb = new StringBuilder();
         sb.append("You are in ");
         if (city != null && !city.isBlank()) sb.append(city).append(" ");
-        sb.append(String.format("(lat %.6f, lon %.6f)", lat, lon));
+        sb.append("(lat ");
+        WeatherRpcCodec.appendFixed(sb, lat, 6).append(", lon ");
+        WeatherRpcCodec.appendFixed(sb, lon, 6).append(')');
         return sb.toString();
     }
 
-    private String buildJsonRpcCityRequest(String city) {
-        com.google.gson.JsonObject args = new com.google.gson.JsonObject();
-        args.addProperty("city", city);
-        com.google.gson.JsonObject params = new com.google.gson.JsonObject();
-        params.addProperty("name", "Current weather by city");
-        params.add("arguments", args);
-        com.google.gson.JsonObject root = new com.google.gson.JsonObject();
-        root.addProperty("jsonrpc", "2.0");
-        root.addProperty("method", "tools/call");
-        root.add("params", params);
-        root.addProperty("id", 5);
-        return gson.toJson(root);
-    }
-
-    private String buildJsonRpcCoordsRequest(double latitude, double longitude) {
-        com.google.gson.JsonObject args = new com.google.gson.JsonObject();
-        args.addProperty(LAT_KEY, String.format("%.6f", latitude));
-        args.addProperty(LON_KEY, String.format("%.6f", longitude));
-        com.google.gson.JsonObject params = new com.google.gson.JsonObject();
-        params.addProperty("name", "Current weather");
-        params.add("arguments", args);
-        com.google.gson.JsonObject root = new com.google.gson.JsonObject();
-        root.addProperty("jsonrpc", "2.0");
-        root.addProperty("method", "tools/call");
-        root.add("params", params);
-        root.addProperty("id", 6);
-        return gson.toJson(root);
-    }
-
-    private String extractTextFromRpc(String rpc) {
-        if (rpc == null || rpc.isEmpty()) return null;
-        try {
-            com.google.gson.JsonObject root = gson.fromJson(rpc, com.google.gson.JsonObject.class);
-            if (!root.has(RESULT_KEY) || !root.get(RESULT_KEY).isJsonObject()) return null;
-            com.google.gson.JsonObject result = root.getAsJsonObject(RESULT_KEY);
-            if (!result.has(CONTENT_KEY) || !result.get(CONTENT_KEY).isJsonArray()) return null;
-            for (var el : result.getAsJsonArray(CONTENT_KEY)) {
-                if (!el.isJsonObject()) continue;
-                com.google.gson.JsonObject c = el.getAsJsonObject();
-                if (c.has("text") && !c.get("text").isJsonNull()) {
-                    String text = c.get("text").getAsString();
-                    String summary = summarizeIfJson(text);
-                    return summary != null ? summary : text;
-                }
-            }
-        } catch (Exception _) { /* ignore */ }
-        return null;
-    }
-
-    private String summarizeIfJson(String text) {
-        if (text == null) return null;
-        String trimmed = text.trim();
-        if (!trimmed.startsWith("{")) return null;
-        try {
-            com.google.gson.JsonObject obj = gson.fromJson(trimmed, com.google.gson.JsonObject.class);
-            com.google.gson.JsonObject current = obj.has(CURRENT_KEY) && obj.get(CURRENT_KEY).isJsonObject()
-                    ? obj.getAsJsonObject(CURRENT_KEY) : null;
-            if (current == null) return null;
-            String time = current.has(TIME_KEY) && !current.get(TIME_KEY).isJsonNull()
-                    ? current.get(TIME_KEY).getAsString() : "unknown time";
-            Double temp = current.has(TEMP_KEY) && !current.get(TEMP_KEY).isJsonNull()
-                    ? current.get(TEMP_KEY).getAsDouble() : null;
-            Double wind = current.has(WIND_KEY) && !current.get(WIND_KEY).isJsonNull()
-                    ? current.get(WIND_KEY).getAsDouble() : null;
-            Double precip = current.has(PRECIP_KEY) && !current.get(PRECIP_KEY).isJsonNull()
-                    ? current.get(PRECIP_KEY).getAsDouble() : null;
-            StringBuilder sb = new StringBuilder("Current weather: ");
-            boolean hasPrev = false;
-            if (temp != null) {
-                sb.append(String.format("%.1f°C", temp));
-                hasPrev = true;
-            }
-            if (wind != null) {
-                if (hasPrev) sb.append(", ");
-                sb.append(String.format("wind %.1f km/h", wind));
-                hasPrev = true;
-            }
-            if (precip != null) {
-                if (hasPrev) sb.append(", ");
-                sb.append(String.format("precipitation %.2f mm", precip));
-            }
-            sb.append(" (as of ").append(time).append(")");
-            return sb.toString();
-        } catch (Exception _) {
-            return null;
-        }
-    }
-
-    private String sanitizeFallback(String response) {
-        if (response == null) return "";
-        return "I’ve fetched the weather using MCP.";
+    @PreDestroy
+    void shutdown() {
+        watchdog.shutdownNow();
+        asyncExecutor.shutdownNow();
     }
 }
@@ -2,50 +2,153 @@ package org.jugistanbul;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @RestController
 @RequestMapping("/api")
 public class ChatController {
 
-    private final ChatBot chatBot;
-    private final WeatherClient weatherClient;
+    private final ModelRouter chatModel;
+    private final ToolResultCache toolCache;
     private final IPLookupClient ipLookupClient;
+    private final LlmAdmissionController admissionController;
+    private final CityWeatherService cityWeatherService;
+    private final ObservationRegistry observationRegistry;
+    private final ChatRateLimiter rateLimiter;
+    private final Journal journal;
+    private final RequestLog requestLog;
+    private final Duration llmDeadline;
+    private final Duration toolDeadline;
     private final Gson gson = new Gson();
+    // Context-propagating, so the message's spans join the request trace
+    private final ExecutorService chatExecutor = ContextExecutorService.wrap(
+            Executors.newVirtualThreadPerTaskExecutor(), ContextSnapshotFactory.builder().build());
     private static final String LAT_KEY = "latitude";
     private static final String LON_KEY = "longitude";
-    private static final String RESULT_KEY = "result";
-    private static final String CONTENT_KEY = "content";
-    private static final String CURRENT_KEY = "current";
-    private static final String TIME_KEY = "time";
-    private static final String TEMP_KEY = "temperature_2m";
-    private static final String WIND_KEY = "wind_speed_10m";
-    private static final String PRECIP_KEY = "precipitation";
-
-    public ChatController(ChatBot chatBot, WeatherClient weatherClient, IPLookupClient ipLookupClient) {
-        this.chatBot = chatBot;
-        this.weatherClient = weatherClient;
+    private static final int MAX_CITY_PREFIX = 64;
+
+    public ChatController(ModelRouter chatModel, ToolResultCache toolCache, IPLookupClient ipLookupClient,
+                          LlmAdmissionController admissionController, CityWeatherService cityWeatherService,
+                          ObservationRegistry observationRegistry, ChatRateLimiter rateLimiter, Journal journal,
+                          RequestLog requestLog,
+                          @Value("${chat.deadline.llm:60s}") Duration llmDeadline,
+                          @Value("${chat.deadline.tool:3s}") Duration toolDeadline) {
+        this.chatModel = chatModel;
+        this.toolCache = toolCache;
         this.ipLookupClient = ipLookupClient;
+        this.admissionController = admissionController;
+        this.cityWeatherService = cityWeatherService;
+        this.observationRegistry = observationRegistry;
+        this.rateLimiter = rateLimiter;
+        this.journal = journal;
+        this.requestLog = requestLog;
+        this.llmDeadline = llmDeadline;
+        this.toolDeadline = toolDeadline;
     }
 
     @PostMapping("/chat")
-    public String chat(@RequestBody ChatRequest request) {
+    public String chat(@RequestBody ChatRequest request, HttpServletRequest httpRequest) throws Exception {
+        long start = System.nanoTime();
         String message = request.getMessage() == null ? "" : request.getMessage();
+        String sessionKey = httpRequest.getUserPrincipal() != null
+                ? httpRequest.getUserPrincipal().getName() : httpRequest.getRemoteAddr();
+        String contextKey = contextKey(httpRequest);
+        // Rate limited per client like the context, and per address; sessionless anonymous callers only have the address
+        ChatRateLimiter.Caller caller = new ChatRateLimiter.Caller(
+                contextKey != null ? contextKey : "ip:" + httpRequest.getRemoteAddr(), httpRequest.getRemoteAddr());
+        String reply = null;
+        Exception failure = null;
+        try {
+            // Tool intents narrow this to the tool deadline; whatever is left is forwarded to the MCP server
+            reply = withDeadline(() -> reply(message, sessionKey, contextKey, caller));
+        } catch (Exception e) {
+            failure = e;
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (reply != null) journal.chat(sessionKey, message, reply, elapsed);
+            // Rate limits and deadlines are expected outcomes, only unexpected errors carry a stack trace
+            String outcome = failure != null ? JfrEvents.outcome(failure) : "ok";
+            requestLog.record("api/chat", sessionKey, elapsed, failure != null, outcome,
+                    new RequestLog.Exchange(message, reply), "error".equals(outcome) ? failure : null);
+        }
+        return reply;
+    }
+
+    // Runs the message on a virtual thread and interrupts it at the deadline, as the WebSocket handler does, so a
+    // blocked model or tool call is abandoned and the caller gets its 504 on time
+    private String withDeadline(Callable<String> work) throws Exception {
+        Future<String> task = chatExecutor.submit(() -> RequestDeadline.within(llmDeadline, work));
+        try {
+            return task.get(llmDeadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException _) {
+            task.cancel(true);
+            throw new RequestDeadline.DeadlineExceededException();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    // Conversation context belongs to one client: the signed-in user or an existing HTTP session. Anonymous callers
+    // without a session get no context reuse, since an address is shared by everyone behind the same NAT or proxy.
+    private static String contextKey(HttpServletRequest httpRequest) {
+        if (httpRequest.getUserPrincipal() != null) return "user:" + httpRequest.getUserPrincipal().getName();
+        HttpSession session = httpRequest.getSession(false);
+        return session != null ? "http:" + session.getId() : null;
+    }
+
+    private String reply(String message, String sessionKey, String contextKey, ChatRateLimiter.Caller caller) throws Exception {
         String lower = message.toLowerCase().trim();
 
         // Location info intent: report IP-based location without weather
         if (lower.contains("where is my location") || lower.matches(".*\\bmy location\\b.*") || lower.matches(".*\\bwhere am i\\b.*")) {
-            return handleLocationInfo();
+            rateLimiter.acquire(caller, ChatRateLimiter.Cost.TOOL, 1);
+            return RequestDeadline.within(toolDeadline, this::handleLocationInfo);
         }
         // Near-me weather intents before city parsing
         if (lower.contains("near me") || lower.contains("around me") || lower.contains("weather here") || lower.contains("current weather here")) {
-            return handleNearMeWeather();
+            rateLimiter.acquire(caller, ChatRateLimiter.Cost.TOOL, 1);
+            return RequestDeadline.within(toolDeadline, this::handleNearMeWeather);
         }
 
-        String cityResult = handleCityWeather(message, lower);
+        String cityResult = RequestDeadline.within(toolDeadline, () -> handleCityWeather(message, lower, caller));
         if (cityResult != null) return cityResult;
 
-        String reply = chatBot.chat(message);
+        rateLimiter.acquire(caller, ChatRateLimiter.Cost.LLM, 1);
+        String reply;
+        try {
+            reply = admissionController.call(sessionKey, message,
+                    () -> Observation.createNotStarted("chat.llm", observationRegistry).observe(
+                            () -> JfrEvents.chatModel(sessionKey, message, () -> chatModel.chat(contextKey, message))));
+        } catch (LlmAdmissionController.AdmissionRejectedException e) {
+            return e.getMessage();
+        }
         // Sanitize any tool trace markers or pseudo-code the model may emit
         reply = reply.replaceAll("<\\|[^| ]*\\|>", ""); // remove special tag markers
         reply = reply.replace("%", ""); // strip stray percent signs
@@ -63,7 +166,7 @@ public class ChatController {
         return result.isEmpty() ? "I’ve fetched the weather using tools and summarized it above." : result;
     }
 
-    private String handleCityWeather(String message, String lower) {
+    private String handleCityWeather(String message, String lower, ChatRateLimiter.Caller caller) {
         int idx = lower.indexOf("weather ");
         String city = null;
         if (idx >= 0) {
@@ -77,16 +180,32 @@ public class ChatController {
             }
         }
         if (city == null) return null;
-        // Strip trailing punctuation
-        if (city.endsWith(".") || city.endsWith("!") || city.endsWith(",")) {
-            city = city.substring(0, city.length() - 1).trim();
-        }
-        if (city.isEmpty()) return null;
-        String cityRequest = buildJsonRpcCityRequest(city);
-        String response = weatherClient.callTool(cityRequest);
-        String text = extractTextFromRpc(response);
-        if (text != null && !text.isEmpty()) return "Weather in " + city + ": " + text;
-        return sanitizeFallback(response);
+        List<String> cities = cityWeatherService.parseCities(city);
+        if (cities.isEmpty()) return null;
+        // One tool call per city
+        rateLimiter.acquire(caller, ChatRateLimiter.Cost.TOOL, cities.size());
+        return cityWeatherService.weatherFor(ToolResultCache.Path.REST, cities, 3);
+    }
+
+    // City typeahead for the chat page: the weather server's suggestions (a JSON array), through the near cache
+    @GetMapping(value = "/cities", produces = MediaType.APPLICATION_JSON_VALUE)
+    public String cities(@RequestParam("q") String prefix) {
+        String trimmed = prefix.trim();
+        if (trimmed.isEmpty() || trimmed.length() > MAX_CITY_PREFIX) return "[]";
+        String text = toolCache.citySuggestions(ToolResultCache.Path.TYPEAHEAD, trimmed, 4);
+        return text != null && text.startsWith("[") ? text : "[]";
+    }
+
+    @ExceptionHandler(ChatRateLimiter.RateLimitedException.class)
+    public ResponseEntity<String> rateLimited(ChatRateLimiter.RateLimitedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(RequestDeadline.DeadlineExceededException.class)
+    public ResponseEntity<String> deadlineExceeded() {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("The request took too long, please try again.");
     }
 
     private String handleNearMeWeather() {
@@ -105,16 +224,14 @@ public class ChatController {
         if (obj.has("lng") && !obj.get("lng").isJsonNull()) lon = obj.get("lng").getAsDouble();
         if (obj.has(LON_KEY) && !obj.get(LON_KEY).isJsonNull()) lon = obj.get(LON_KEY).getAsDouble();
         if (lat != null && lon != null) {
-            String coordsRequest = buildJsonRpcCoordsRequest(lat, lon);
-            String response = weatherClient.callTool(coordsRequest);
-            String text = extractTextFromRpc(response);
+            String text = toolCache.coordinates(ToolResultCache.Path.REST, lat, lon, 2);
             // Try to include city name from IP lookup if available
             String cityName = null;
             if (obj.has("city") && !obj.get("city").isJsonNull()) cityName = obj.get("city").getAsString();
             if (text != null && !text.isEmpty()) {
                 return (cityName != null && !cityName.isBlank()) ? ("Weather in " + cityName + ": " + text) : text;
             }
-            return sanitizeFallback(response);
+            return "I’ve fetched the weather using MCP.";
         }
         return "Could not determine coordinates from IP location.";
     }
@@ -139,102 +256,15 @@ public class ChatController {
         StringBuilder sb = new StringBuilder();
         sb.append("You are in ");
         if (city != null && !city.isBlank()) sb.append(city).append(" ");
-        sb.append(String.format("(lat %.6f, lon %.6f)", lat, lon));
+        sb.append("(lat ");
+        WeatherRpcCodec.appendFixed(sb, lat, 6).append(", lon ");
+        WeatherRpcCodec.appendFixed(sb, lon, 6).append(')');
         return sb.toString();
     }
 
-    private String buildJsonRpcCityRequest(String city) {
-        JsonObject args = new JsonObject();
-        args.addProperty("city", city);
-        JsonObject params = new JsonObject();
-        params.addProperty("name", "Current weather by city");
-        params.add("arguments", args);
-        JsonObject root = new JsonObject();
-        root.addProperty("jsonrpc", "2.0");
-        root.addProperty("method", "tools/call");
-        root.add("params", params);
-        root.addProperty("id", 3);
-        return gson.toJson(root);
-    }
-
-    private String buildJsonRpcCoordsRequest(double latitude, double longitude) {
-        JsonObject args = new JsonObject();
-        args.addProperty(LAT_KEY, String.format("%.6f", latitude));
-        args.addProperty(LON_KEY, String.format("%.6f", longitude));
-        JsonObject params = new JsonObject();
-        params.addProperty("name", "Current weather");
-        params.add("arguments", args);
-        JsonObject root = new JsonObject();
-        root.addProperty("jsonrpc", "2.0");
-        root.addProperty("method", "tools/call");
-        root.add("params", params);
-        root.addProperty("id", 2);
-        return gson.toJson(root);
-    }
-
-    private String extractTextFromRpc(String rpc) {
-        if (rpc == null || rpc.isEmpty()) return null;
-        try {
-            JsonObject root = gson.fromJson(rpc, JsonObject.class);
-            if (!root.has(RESULT_KEY) || !root.get(RESULT_KEY).isJsonObject()) return null;
-            JsonObject result = root.getAsJsonObject(RESULT_KEY);
-            if (!result.has(CONTENT_KEY) || !result.get(CONTENT_KEY).isJsonArray()) return null;
-            for (var el : result.getAsJsonArray(CONTENT_KEY)) {
-                if (!el.isJsonObject()) continue;
-                JsonObject c = el.getAsJsonObject();
-                if (c.has("text") && !c.get("text").isJsonNull()) {
-                    String text = c.get("text").getAsString();
-                    String summary = summarizeIfJson(text);
-                    return summary != null ? summary : text;
-                }
-            }
-        } catch (Exception _) { /* ignore: fallback below */ }
-        return null;
-    }
-
-    private String summarizeIfJson(String text) {
-        if (text == null) return null;
-        String trimmed = text.trim();
-        if (!trimmed.startsWith("{")) return null;
-        try {
-            JsonObject obj = gson.fromJson(trimmed, JsonObject.class);
-            JsonObject current = obj.has(CURRENT_KEY) && obj.get(CURRENT_KEY).isJsonObject()
-                    ? obj.getAsJsonObject(CURRENT_KEY) : null;
-            if (current == null) return null;
-            String time = current.has(TIME_KEY) && !current.get(TIME_KEY).isJsonNull()
-                    ? current.get(TIME_KEY).getAsString() : "unknown time";
-            Double temp = current.has(TEMP_KEY) && !current.get(TEMP_KEY).isJsonNull()
-                    ? current.get(TEMP_KEY).getAsDouble() : null;
-            Double wind = current.has(WIND_KEY) && !current.get(WIND_KEY).isJsonNull()
-                    ? current.get(WIND_KEY).getAsDouble() : null;
-            Double precip = current.has(PRECIP_KEY) && !current.get(PRECIP_KEY).isJsonNull()
-                    ? current.get(PRECIP_KEY).getAsDouble() : null;
-            StringBuilder sb = new StringBuilder("Current weather: ");
-            boolean hasPrev = false;
-            if (temp != null) {
-                sb.append(String.format("%.1f°C", temp));
-                hasPrev = true;
-            }
-            if (wind != null) {
-                if (hasPrev) sb.append(", ");
-                sb.append(String.format("wind %.1f km/h", wind));
-                hasPrev = true;
-            }
-            if (precip != null) {
-                if (hasPrev) sb.append(", ");
-                sb.append(String.format("precipitation %.2f mm", precip));
-            }
-            sb.append(" (as of ").append(time).append(")");
-            return sb.toString();
-        } catch (Exception _) {
-            return null;
-        }
-    }
-
-    private String sanitizeFallback(String response) {
-        if (response == null) return "";
-        // If the response contains structured data, return a simple message
-        return "I’ve fetched the weather using MCP.";
+    @PreDestroy
+    void shutdown() {
+        chatExecutor.shutdownNow();
     }
 
     public static class ChatRequest {
@@ -0,0 +1,178 @@
+package org.jugistanbul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-user / per-IP token buckets for the chat entry points, with separate limits for LLM-bound and
+// tool-bound messages. Each bucket is a single AtomicLong holding its "theoretical arrival time"
+// (GCRA): acquiring is one CAS, and a bucket whose time has passed is indistinguishable from a new
+// one, so idle buckets can be dropped without losing state. Keys are spread over stripes, each
+// bounded; when a stripe is full of active keys, new keys share that stripe's overflow bucket.
+// A message takes tokens from two buckets: its client's (the signed-in user, else the session, else the
+// address) and its remote address's. The address bucket allows address.multiplier times the client limits,
+// since one address can carry many users behind a NAT or proxy, and caps a script that opens new sessions.
+@Component
+public class ChatRateLimiter {
+
+    public enum Cost { LLM, TOOL }
+
+    // client: principal, session or address key, never null; address: remote IP, null when unknown
+    public record Caller(String client, String address) {
+    }
+
+    private enum Scope { CLIENT, ADDRESS }
+
+    private static final int STRIPES = 16;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public static class RateLimitedException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        public RateLimitedException(long retryAfterSeconds) {
+            // No stack trace: rejections are on the hot path when someone is flooding us
+            super("You are sending messages too fast. Please wait " + retryAfterSeconds + "s and try again.", null, false, false);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private static final class Limit {
+        final long intervalNanos;
+        final long toleranceNanos;
+        final Counter rejected;
+
+        Limit(int perMinute, int burst, Counter rejected) {
+            this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            // A full bucket admits `burst` requests back to back
+            this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+            this.rejected = rejected;
+        }
+    }
+
+    // Stripes are kept per scope and cost, so lookups need no composite key
+    private static final class Stripe {
+        final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        final AtomicLong overflow = new AtomicLong(Long.MIN_VALUE);
+        volatile long lastSweep;
+    }
+
+    private final boolean enabled;
+    private final Limit[][] limits = new Limit[Scope.values().length][Cost.values().length];
+    private final Stripe[][][] stripes = new Stripe[Scope.values().length][Cost.values().length][STRIPES];
+    private final int maxKeysPerStripe;
+
+    public ChatRateLimiter(MeterRegistry meterRegistry,
+                           @Value("${chat.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${chat.rate-limit.llm.per-minute:10}") int llmPerMinute,
+                           @Value("${chat.rate-limit.llm.burst:3}") int llmBurst,
+                           @Value("${chat.rate-limit.tool.per-minute:60}") int toolPerMinute,
+                           @Value("${chat.rate-limit.tool.burst:10}") int toolBurst,
+                           @Value("${chat.rate-limit.address.multiplier:5}") int addressMultiplier,
+                           @Value("${chat.rate-limit.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        int multiplier = Math.max(1, addressMultiplier);
+        for (Scope scope : Scope.values()) {
+            int factor = scope == Scope.ADDRESS ? multiplier : 1;
+            String tag = scope.name().toLowerCase(Locale.ROOT);
+            this.limits[scope.ordinal()][Cost.LLM.ordinal()] = new Limit(saturatedMultiply(llmPerMinute, factor),
+                    saturatedMultiply(llmBurst, factor), meterRegistry.counter("chat.ratelimit.rejected", "cost", "llm", "scope", tag));
+            this.limits[scope.ordinal()][Cost.TOOL.ordinal()] = new Limit(saturatedMultiply(toolPerMinute, factor),
+                    saturatedMultiply(toolBurst, factor), meterRegistry.counter("chat.ratelimit.rejected", "cost", "tool", "scope", tag));
+            for (Stripe[] perCost : stripes[scope.ordinal()]) {
+                for (int i = 0; i < STRIPES; i++) perCost[i] = new Stripe();
+            }
+        }
+        this.maxKeysPerStripe = Math.max(1, maxKeys / (STRIPES * Cost.values().length * Scope.values().length));
+        Gauge.builder("chat.ratelimit.keys", this, ChatRateLimiter::keyCount).register(meterRegistry);
+    }
+
+    // Takes `permits` tokens from the caller's client and address buckets or throws RateLimitedException
+    public void acquire(Caller caller, Cost cost, int permits) {
+        long waitNanos = tryAcquire(caller, cost, permits);
+        if (waitNanos > 0) throw new RateLimitedException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+    }
+
+    // Returns 0 when granted, otherwise how long the caller should wait before retrying. The client bucket
+    // goes first; when the address bucket then rejects, the client's tokens are handed back.
+    public long tryAcquire(Caller caller, Cost cost, int permits) {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        long count = Math.max(1, permits);
+        Limit clientLimit = limits[Scope.CLIENT.ordinal()][cost.ordinal()];
+        AtomicLong client = bucket(Scope.CLIENT, caller.client(), cost, now);
+        long waitNanos = take(client, clientLimit, count, now);
+        if (waitNanos > 0 || caller.address() == null) return waitNanos;
+        Limit addressLimit = limits[Scope.ADDRESS.ordinal()][cost.ordinal()];
+        waitNanos = take(bucket(Scope.ADDRESS, caller.address(), cost, now), addressLimit, count, now);
+        if (waitNanos > 0) client.addAndGet(-clientLimit.intervalNanos * count);
+        return waitNanos;
+    }
+
+    private static long take(AtomicLong bucket, Limit limit, long permits, long now) {
+        long increment = limit.intervalNanos * permits;
+        while (true) {
+            long tat = bucket.get();
+            long start = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+            long next = start + increment;
+            long excess = next - now - limit.intervalNanos - limit.toleranceNanos;
+            if (excess > 0) {
+                limit.rejected.increment();
+                return excess;
+            }
+            if (bucket.compareAndSet(tat, next)) return 0;
+        }
+    }
+
+    private AtomicLong bucket(Scope scope, String key, Cost cost, long now) {
+        Stripe stripe = stripes[scope.ordinal()][cost.ordinal()][spread(key.hashCode()) & (STRIPES - 1)];
+        AtomicLong bucket = stripe.buckets.get(key);
+        if (bucket != null) return bucket;
+        if (stripe.buckets.size() >= maxKeysPerStripe) {
+            evictIdle(stripe, now);
+            if (stripe.buckets.size() >= maxKeysPerStripe) return stripe.overflow;
+        }
+        return stripe.buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+    }
+
+    // A bucket whose theoretical arrival time has passed is full again, i.e. equal to a fresh one.
+    // Sweeps are at most once a second per stripe so a flood of new keys cannot turn into constant scans.
+    private static void evictIdle(Stripe stripe, long now) {
+        long last = stripe.lastSweep;
+        if (last != 0 && now - last < SWEEP_INTERVAL_NANOS) return;
+        stripe.lastSweep = now;
+        stripe.buckets.values().removeIf(bucket -> {
+            long tat = bucket.get();
+            return tat == Long.MIN_VALUE || tat - now < 0;
+        });
+    }
+
+    private static int saturatedMultiply(int value, int factor) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) value * factor);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private double keyCount() {
+        long total = 0;
+        for (Stripe[][] perScope : stripes) {
+            for (Stripe[] perCost : perScope) {
+                for (Stripe stripe : perCost) total += stripe.buckets.size();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,101 @@
+package org.jugistanbul;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+// Resolves "weather Istanbul; Ankara and Izmir" style requests: one MCP tool call per city,
+// all running concurrently under a shared deadline, answered with whatever finished in time.
+// Commas do not separate cities, so "Paris, France" stays one lookup.
+@Component
+public class CityWeatherService {
+
+    private static final Pattern CITY_SEPARATOR = Pattern.compile("\\s*(?:;|&|\\band\\b)\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LEADING_PREPOSITION = Pattern.compile("^(?i)(?:in|for|at)\\s+");
+
+    private final ToolResultCache toolCache;
+    private final long deadlineNanos;
+    private final int maxCities;
+    // Context-propagating so tool calls stay children of the current trace
+    private final ExecutorService executor = ContextExecutorService.wrap(
+            Executors.newVirtualThreadPerTaskExecutor(), ContextSnapshotFactory.builder().build());
+
+    public CityWeatherService(ToolResultCache toolCache,
+                              @Value("${chat.weather.fan-out-deadline:3s}") Duration deadline,
+                              @Value("${chat.weather.max-cities:5}") int maxCities) {
+        this.toolCache = toolCache;
+        this.deadlineNanos = deadline.toNanos();
+        this.maxCities = maxCities;
+    }
+
+    public List<String> parseCities(String cityText) {
+        Set<String> cities = new LinkedHashSet<>();
+        for (String part : CITY_SEPARATOR.split(cityText)) {
+            String city = LEADING_PREPOSITION.matcher(part.trim()).replaceFirst("");
+            // Strip trailing punctuation
+            while (!city.isEmpty() && ".!?,".indexOf(city.charAt(city.length() - 1)) >= 0) {
+                city = city.substring(0, city.length() - 1).trim();
+            }
+            if (!city.isEmpty() && cities.size() < maxCities) cities.add(city);
+        }
+        return new ArrayList<>(cities);
+    }
+
+    public String weatherFor(ToolResultCache.Path path, List<String> cities, int requestId) {
+        if (cities.size() == 1) {
+            String city = cities.get(0);
+            String text = toolCache.city(path, city, requestId);
+            if (text != null && !text.isEmpty()) return "Weather in " + city + ": " + text;
+            return "I’ve fetched the weather using MCP.";
+        }
+
+        long deadline = System.nanoTime() + Math.min(deadlineNanos, RequestDeadline.remainingNanos());
+        List<Future<String>> calls = new ArrayList<>(cities.size());
+        for (String city : cities) {
+            calls.add(executor.submit(() -> toolCache.city(path, city, requestId)));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cities.size(); i++) {
+            if (i > 0) sb.append('\n');
+            sb.append("Weather in ").append(cities.get(i)).append(": ").append(await(calls.get(i), deadline));
+        }
+        return sb.toString();
+    }
+
+    private String await(Future<String> call, long deadline) {
+        try {
+            String text = call.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return (text != null && !text.isEmpty()) ? text : "no data returned.";
+        } catch (TimeoutException _) {
+            // Past the shared deadline: stop waiting and do not let the call outlive this request
+            call.cancel(true);
+            return "not available in time.";
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            call.cancel(true);
+            return "not available in time.";
+        } catch (ExecutionException _) {
+            return "weather service is unavailable right now.";
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,126 @@
+package org.jugistanbul;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+// Writes finished spans as JSON lines to a local file so traces can be inspected without a collector.
+// When the file reaches max-size it is rolled to <file>.1 (older ones shift to .2, .3, ...) and only
+// max-files rolled files are kept, so the directory never holds more than (max-files + 1) * max-size.
+@Component
+@ConditionalOnProperty(name = "tracing.export.file")
+public class FileSpanExporter implements SpanExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private OutputStream out;
+    private long size;
+
+    public FileSpanExporter(ObjectMapper objectMapper,
+                            @Value("${tracing.export.file}") Path file,
+                            @Value("${tracing.export.max-size:32MB}") DataSize maxSize,
+                            @Value("${tracing.export.max-files:3}") int maxFiles) throws IOException {
+        this.objectMapper = objectMapper;
+        this.file = file;
+        this.maxBytes = Math.max(1, maxSize.toBytes());
+        this.maxFiles = Math.max(0, maxFiles);
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        open();
+    }
+
+    private void open() throws IOException {
+        this.out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        this.size = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        Path base = file.getFileName();
+        if (maxFiles == 0) {
+            Files.delete(file);
+        } else {
+            Files.deleteIfExists(file.resolveSibling(base + "." + maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path older = file.resolveSibling(base + "." + i);
+                if (Files.exists(older)) Files.move(older, file.resolveSibling(base + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(file, file.resolveSibling(base + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            for (SpanData span : spans) {
+                ObjectNode node = objectMapper.createObjectNode()
+                        .put("traceId", span.getTraceId())
+                        .put("spanId", span.getSpanId())
+                        .put("parentSpanId", span.getParentSpanId())
+                        .put("name", span.getName())
+                        .put("kind", span.getKind().name())
+                        .put("service", span.getResource().getAttribute(SERVICE_NAME))
+                        .put("startEpochNanos", span.getStartEpochNanos())
+                        .put("durationMicros", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000)
+                        .put("status", span.getStatus().getStatusCode().name());
+                ObjectNode attributes = node.putObject("attributes");
+                span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+                byte[] line = objectMapper.writeValueAsBytes(node);
+                if (size > 0 && size + line.length + 1 > maxBytes) roll();
+                out.write(line);
+                out.write('\n');
+                size += line.length + 1;
+            }
+            out.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Could not write spans", e);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode flush() {
+        try {
+            out.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        try {
+            out.close();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.jugistanbul;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.function.Supplier;
+
+// Flight Recorder events for WebSocket message handling, chat model calls and MCP tool calls, so recordings
+// can be filtered by session, intent and tool and lined up with allocation and GC events on the same thread.
+// Fields that cost anything to compute are only filled in when the event will be committed.
+// Settings: src/main/resources/jfr/step-05-mcp.jfc.
+final class JfrEvents {
+
+    private static final ThreadLocal<WebSocketMessage> CURRENT_MESSAGE = new ThreadLocal<>();
+    private static final String TOOL_NAME = "\"name\":\"";
+
+    private JfrEvents() {
+    }
+
+    @Name("org.jugistanbul.WebSocketMessage")
+    @Label("WebSocket Message")
+    @Category({"Chat"})
+    @Description("One chat message handled by ChatBotWebSocketHandler, from receipt to reply")
+    @StackTrace(false)
+    static final class WebSocketMessage extends Event {
+        @Label("Session Id")
+        String sessionId;
+        @Label("Intent")
+        @Description("location, near-me, city or llm")
+        String intent;
+        @Label("Message Length")
+        long messageChars;
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("org.jugistanbul.ChatModelCall")
+    @Label("Chat Model Call")
+    @Category({"Chat"})
+    @Description("One ChatBot.chat call, after admission")
+    @StackTrace(false)
+    static final class ChatModelCall extends Event {
+        @Label("Session")
+        String session;
+        @Label("Prompt Length")
+        long promptChars;
+        @Label("Reply Length")
+        long replyChars;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("org.jugistanbul.McpToolCall")
+    @Label("MCP Tool Call")
+    @Category({"Chat"})
+    @Description("One tools/call attempt sent to a weather-mcp-server replica")
+    @StackTrace(false)
+    static final class McpToolCall extends Event {
+        @Label("Tool")
+        String tool;
+        @Label("Replica")
+        String replica;
+        @Label("Request Length")
+        long requestChars;
+        @Label("Response Length")
+        long responseChars;
+        @Label("Outcome")
+        @Description("ok, error or cancelled (hedge lost, session closed, deadline)")
+        String outcome;
+    }
+
+    static WebSocketMessage beginMessage(String sessionId, String message) {
+        WebSocketMessage event = new WebSocketMessage();
+        if (!event.isEnabled()) return event;
+        event.sessionId = sessionId;
+        event.messageChars = message == null ? 0 : message.length();
+        event.begin();
+        CURRENT_MESSAGE.set(event);
+        return event;
+    }
+
+    static void endMessage(WebSocketMessage event, String outcome) {
+        if (!event.isEnabled()) return;
+        CURRENT_MESSAGE.remove();
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    static String outcome(Throwable failure) {
+        if (failure instanceof ChatRateLimiter.RateLimitedException) return "rate-limited";
+        if (failure instanceof RequestDeadline.DeadlineExceededException) return "deadline";
+        if (failure instanceof InterruptedException || Thread.currentThread().isInterrupted()) return "cancelled";
+        return "error";
+    }
+
+    // Called by the handler once it knows what the message asks for
+    static void intent(String intent) {
+        WebSocketMessage event = CURRENT_MESSAGE.get();
+        if (event != null) event.intent = intent;
+    }
+
+    static String chatModel(String session, String prompt, Supplier<String> call) {
+        ChatModelCall event = new ChatModelCall();
+        event.begin();
+        String reply = null;
+        try {
+            reply = call.get();
+            return reply;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.session = session;
+                event.promptChars = prompt == null ? 0 : prompt.length();
+                event.replyChars = reply == null ? 0 : reply.length();
+                event.succeeded = reply != null;
+                event.commit();
+            }
+        }
+    }
+
+    static McpToolCall beginToolCall() {
+        McpToolCall event = new McpToolCall();
+        event.begin();
+        return event;
+    }
+
+    static void endToolCall(McpToolCall event, String replica, String request, String response, String outcome) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        int name = request.indexOf(TOOL_NAME);
+        if (name >= 0) {
+            int start = name + TOOL_NAME.length();
+            int end = request.indexOf('"', start);
+            if (end > start) event.tool = request.substring(start, end);
+        }
+        event.replica = replica;
+        event.requestChars = request.length();
+        event.responseChars = response == null ? 0 : response.length();
+        event.outcome = outcome;
+        event.commit();
+    }
+}
@@ -0,0 +1,76 @@
+package org.jugistanbul;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Rolling latency histogram with log-scale buckets (~12% wide). Samples from the current and the
+// previous window are used for percentiles, so old spikes age out after two windows.
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 96;
+    private static final double GROWTH = 1.12;
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+
+    private final long windowNanos;
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+    private volatile long windowStart = System.nanoTime();
+
+    LatencyHistogram(long windowNanos) {
+        this.windowNanos = windowNanos;
+    }
+
+    void record(long millis) {
+        rotateIfNeeded();
+        current.incrementAndGet(bucketOf(millis));
+    }
+
+    long count() {
+        rotateIfNeeded();
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += cur.get(i) + prev.get(i);
+        return total;
+    }
+
+    // Upper bound of the bucket holding the given quantile, or -1 without samples
+    long percentile(double quantile) {
+        rotateIfNeeded();
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = cur.get(i) + prev.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return -1;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private void rotateIfNeeded() {
+        long now = System.nanoTime();
+        if (now - windowStart < windowNanos) return;
+        synchronized (this) {
+            if (now - windowStart < windowNanos) return;
+            previous = current;
+            current = new AtomicLongArray(BUCKETS);
+            windowStart = now;
+        }
+    }
+
+    private static int bucketOf(long millis) {
+        if (millis <= 1) return 0;
+        return (int) Math.min(BUCKETS - 1, Math.ceil(Math.log(millis) / LOG_GROWTH));
+    }
+
+    private static long upperBound(int bucket) {
+        return (long) Math.ceil(Math.pow(GROWTH, bucket));
+    }
+}
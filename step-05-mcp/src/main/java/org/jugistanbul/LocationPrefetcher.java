@@ -0,0 +1,146 @@
+package org.jugistanbul;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Speculatively fetches the IP location and the current-location forecast when a chat session opens,
+// so the first "where am I" / "weather here" message can be answered without waiting on upstream calls.
+// The location lookup takes no client address, so every session would get the same answer: one snapshot is
+// shared by all sessions and refetched only once its TTL has passed, by whichever connect comes first
+// (single flight). A failed fetch is retried after FAILURE_RETRY at the earliest, not on every connect.
+@Component
+public class LocationPrefetcher {
+
+    private static final String LAT_KEY = "latitude";
+    private static final String LON_KEY = "longitude";
+    private static final long FAILURE_RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    public record Snapshot(String locationJson, String forecastRpc) {}
+
+    private static final class Prefetch {
+        final CompletableFuture<Snapshot> snapshot = new CompletableFuture<>();
+        volatile long expiresAt;
+        volatile boolean used;
+
+        Prefetch(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final IPLookupClient ipLookupClient;
+    private final McpReplicaRouter mcpRouter;
+    private final Gson gson = new Gson();
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long joinTimeoutNanos;
+    private final AtomicReference<Prefetch> current = new AtomicReference<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter hits;
+    private final Counter inFlightHits;
+    private final Counter misses;
+    private final Counter wasted;
+    private final Counter fetches;
+
+    public LocationPrefetcher(IPLookupClient ipLookupClient, McpReplicaRouter mcpRouter, MeterRegistry meterRegistry,
+                              @Value("${chat.prefetch.enabled:true}") boolean enabled,
+                              @Value("${chat.prefetch.ttl:60s}") Duration ttl,
+                              @Value("${chat.prefetch.join-timeout:500ms}") Duration joinTimeout) {
+        this.ipLookupClient = ipLookupClient;
+        this.mcpRouter = mcpRouter;
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.joinTimeoutNanos = joinTimeout.toNanos();
+        this.hits = meterRegistry.counter("chat.prefetch.lookups", "outcome", "hit");
+        this.inFlightHits = meterRegistry.counter("chat.prefetch.lookups", "outcome", "in_flight");
+        this.misses = meterRegistry.counter("chat.prefetch.lookups", "outcome", "miss");
+        this.wasted = meterRegistry.counter("chat.prefetch.wasted");
+        this.fetches = meterRegistry.counter("chat.prefetch.fetches");
+    }
+
+    // Starts a fetch unless the shared snapshot is still fresh or already being fetched
+    public void start() {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        Prefetch existing = current.get();
+        if (existing != null && now - existing.expiresAt < 0) return;
+        Prefetch prefetch = new Prefetch(now + ttlNanos);
+        if (!current.compareAndSet(existing, prefetch)) return;
+        if (existing != null && !existing.used) wasted.increment();
+        fetches.increment();
+        try {
+            executor.execute(() -> {
+                try {
+                    String locJson = ipLookupClient.getLocation();
+                    prefetch.snapshot.complete(new Snapshot(locJson, fetchForecast(locJson)));
+                } catch (Exception e) {
+                    prefetch.expiresAt = System.nanoTime() + Math.min(ttlNanos, FAILURE_RETRY_NANOS);
+                    prefetch.snapshot.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            prefetch.snapshot.cancel(false);
+        }
+    }
+
+    // Returns the prefetched data, or null when the caller should fetch it itself. A prefetch still in flight is
+    // waited for up to the join timeout, but never past half of the request's remaining deadline, so the live
+    // lookup that follows a slow prefetch still has budget left.
+    public Snapshot lookup() {
+        Prefetch prefetch = current.get();
+        if (prefetch == null || System.nanoTime() - prefetch.expiresAt > 0) {
+            misses.increment();
+            return null;
+        }
+        boolean ready = prefetch.snapshot.isDone();
+        try {
+            long waitNanos = Math.max(0, Math.min(joinTimeoutNanos, RequestDeadline.remainingNanos() / 2));
+            Snapshot snapshot = prefetch.snapshot.get(waitNanos, TimeUnit.NANOSECONDS);
+            prefetch.used = true;
+            (ready ? hits : inFlightHits).increment();
+            return snapshot;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception _) {
+            // Prefetch failed or is too slow; fall back to a live lookup
+        }
+        misses.increment();
+        return null;
+    }
+
+    private String fetchForecast(String locJson) {
+        JsonObject obj = gson.fromJson(locJson, JsonObject.class);
+        Double lat = null;
+        Double lon = null;
+        if (obj.has("lat") && !obj.get("lat").isJsonNull()) lat = obj.get("lat").getAsDouble();
+        if (obj.has(LAT_KEY) && !obj.get(LAT_KEY).isJsonNull()) lat = obj.get(LAT_KEY).getAsDouble();
+        if (obj.has("lon") && !obj.get("lon").isJsonNull()) lon = obj.get("lon").getAsDouble();
+        if (obj.has("lng") && !obj.get("lng").isJsonNull()) lon = obj.get("lng").getAsDouble();
+        if (obj.has(LON_KEY) && !obj.get(LON_KEY).isJsonNull()) lon = obj.get(LON_KEY).getAsDouble();
+        if (lat == null || lon == null) return null;
+        try {
+            return mcpRouter.callTool(WeatherRpcCodec.coordsRequest(lat, lon, 6));
+        } catch (Exception _) {
+            // Keep the location even if the forecast could not be prefetched
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
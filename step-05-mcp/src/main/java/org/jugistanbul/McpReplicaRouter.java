@@ -0,0 +1,311 @@
+package org.jugistanbul;
+
+import feign.Request;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Routes MCP tool calls across weather-mcp-server replicas: least outstanding requests first,
+// replicas that keep failing are ejected for a while, slow calls are hedged on a second replica
+// after the observed p95, and read timeouts follow the observed p99 instead of a constant.
+// The caller's RequestDeadline caps the timeout and is forwarded in params._meta.timeoutMs.
+@Component
+public class McpReplicaRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(McpReplicaRouter.class);
+
+    static final class Replica {
+        final URI uri;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile long ejectedUntil;
+        final Timer latency;
+
+        Replica(URI uri, Timer latency) {
+            this.uri = uri;
+            this.latency = latency;
+        }
+
+        boolean ejected(long now) {
+            return now - ejectedUntil < 0;
+        }
+    }
+
+    // One tools/call sent to one replica. Cancelling it interrupts the virtual thread making the call,
+    // which aborts its blocking socket read, and sends notifications/cancelled to the replica.
+    private final class Attempt {
+        final Replica replica;
+        final String requestId;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        volatile Future<?> task;
+        volatile boolean cancelled;
+
+        Attempt(Replica replica, String requestId) {
+            this.replica = replica;
+            this.requestId = requestId;
+        }
+
+        void cancel(String reason) {
+            if (result.isDone()) return;
+            cancelled = true;
+            result.cancel(false);
+            Future<?> running = task;
+            if (running != null) running.cancel(true);
+            sendCancelled(replica, requestId, reason);
+        }
+    }
+
+    private final WeatherClient weatherClient;
+    private final Journal journal;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final LatencyHistogram histogram;
+    // Context-propagating so tool calls stay children of the current trace
+    private final ExecutorService executor = ContextExecutorService.wrap(
+            Executors.newVirtualThreadPerTaskExecutor(), ContextSnapshotFactory.builder().build());
+    private final int connectTimeoutMillis;
+    private final long defaultTimeoutMillis;
+    private final long minTimeoutMillis;
+    private final long maxTimeoutMillis;
+    private final double timeoutMultiplier;
+    private final boolean hedgingEnabled;
+    private final long minHedgeDelayMillis;
+    private final int minSamples;
+    private final int ejectAfterFailures;
+    private final long ejectionNanos;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter ejections;
+    private final Request.Options cancelOptions;
+    // Request ids are unique per process and random across processes, so a replica can tell callers apart
+    private final String requestIdPrefix = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36) + "-";
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    public McpReplicaRouter(WeatherClient weatherClient, MeterRegistry meterRegistry, Journal journal,
+                            @Value("${mcp.weather.replicas:http://localhost:8081}") List<URI> replicaUris,
+                            @Value("${mcp.weather.connect-timeout:1s}") Duration connectTimeout,
+                            @Value("${mcp.weather.timeout.default:2s}") Duration defaultTimeout,
+                            @Value("${mcp.weather.timeout.min:300ms}") Duration minTimeout,
+                            @Value("${mcp.weather.timeout.max:5s}") Duration maxTimeout,
+                            @Value("${mcp.weather.timeout.p99-multiplier:3}") double timeoutMultiplier,
+                            @Value("${mcp.weather.hedging.enabled:true}") boolean hedgingEnabled,
+                            @Value("${mcp.weather.hedging.min-delay:50ms}") Duration minHedgeDelay,
+                            @Value("${mcp.weather.latency.window:30s}") Duration latencyWindow,
+                            @Value("${mcp.weather.latency.min-samples:20}") int minSamples,
+                            @Value("${mcp.weather.ejection.consecutive-failures:3}") int ejectAfterFailures,
+                            @Value("${mcp.weather.ejection.time:10s}") Duration ejectionTime) {
+        this.weatherClient = weatherClient;
+        this.journal = journal;
+        for (URI uri : replicaUris) {
+            replicas.add(new Replica(uri, Timer.builder("mcp.client.latency")
+                    .tag("replica", uri.toString())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)));
+        }
+        if (replicas.isEmpty()) throw new IllegalArgumentException("mcp.weather.replicas must not be empty");
+        this.histogram = new LatencyHistogram(latencyWindow.toNanos());
+        this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+        this.defaultTimeoutMillis = defaultTimeout.toMillis();
+        this.minTimeoutMillis = minTimeout.toMillis();
+        this.maxTimeoutMillis = maxTimeout.toMillis();
+        this.timeoutMultiplier = timeoutMultiplier;
+        this.hedgingEnabled = hedgingEnabled;
+        this.minHedgeDelayMillis = minHedgeDelay.toMillis();
+        this.minSamples = minSamples;
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectionNanos = ejectionTime.toNanos();
+        this.hedges = meterRegistry.counter("mcp.client.hedges", "outcome", "sent");
+        this.hedgeWins = meterRegistry.counter("mcp.client.hedges", "outcome", "won");
+        this.ejections = meterRegistry.counter("mcp.client.ejections");
+        this.cancelOptions = new Request.Options(connectTimeoutMillis, TimeUnit.MILLISECONDS,
+                (int) minTimeoutMillis, TimeUnit.MILLISECONDS, true);
+    }
+
+    public String callTool(String jsonRpcRequestBody) {
+        // Nobody is waiting for the answer any more: do not spend a replica on it
+        RequestDeadline.check();
+        long budgetMillis = TimeUnit.NANOSECONDS.toMillis(RequestDeadline.remainingNanos());
+        boolean warm = histogram.count() >= minSamples;
+        long timeoutMillis = warm
+                ? clamp((long) (histogram.percentile(0.99) * timeoutMultiplier), minTimeoutMillis, maxTimeoutMillis)
+                : defaultTimeoutMillis;
+        Request.Options options = new Request.Options(connectTimeoutMillis, TimeUnit.MILLISECONDS,
+                (int) Math.max(1, Math.min(timeoutMillis, budgetMillis)), TimeUnit.MILLISECONDS, true);
+
+        Replica primary = select(null);
+        Attempt first = attempt(primary, jsonRpcRequestBody, options);
+        long hedgeDelay = (hedgingEnabled && warm && replicas.size() > 1)
+                ? Math.max(minHedgeDelayMillis, histogram.percentile(0.95)) : -1;
+        try {
+            return hedgeDelay > 0 ? first.result.get(hedgeDelay, TimeUnit.MILLISECONDS) : first.result.get();
+        } catch (TimeoutException e) {
+            // The primary is slower than 95% of recent calls: race it against another replica
+            Replica second = select(primary);
+            if (second == null) return await(first);
+            hedges.increment();
+            Attempt hedge = attempt(second, jsonRpcRequestBody, options);
+            return firstSuccessful(first, hedge);
+        } catch (ExecutionException e) {
+            // Fast failure: retry once on a different replica
+            Replica second = select(primary);
+            if (second == null || RequestDeadline.remainingNanos() <= 0) throw unwrap(e);
+            return await(attempt(second, jsonRpcRequestBody, options));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            first.cancel("interrupted");
+            throw new IllegalStateException("Interrupted while calling MCP server", e);
+        }
+    }
+
+    private Attempt attempt(Replica replica, String body, Request.Options options) {
+        String requestId = requestIdPrefix + nextRequestId.incrementAndGet();
+        long budgetNanos = RequestDeadline.remainingNanos();
+        String request = WeatherRpcCodec.forAttempt(body, requestId,
+                budgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, TimeUnit.NANOSECONDS.toMillis(budgetNanos)));
+        Attempt attempt = new Attempt(replica, requestId);
+        replica.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        attempt.task = executor.submit(() -> {
+            boolean failed = true;
+            String response = null;
+            JfrEvents.McpToolCall event = JfrEvents.beginToolCall();
+            try {
+                response = weatherClient.callTool(replica.uri, options, request);
+                attempt.result.complete(response);
+                failed = false;
+                journal.toolCall(replica.uri.toString(), request, response, System.nanoTime() - start);
+            } catch (Throwable error) {
+                attempt.result.completeExceptionally(error);
+                if (!attempt.cancelled) {
+                    journal.toolCall(replica.uri.toString(), request, "error: " + error, System.nanoTime() - start);
+                }
+            } finally {
+                JfrEvents.endToolCall(event, replica.uri.toString(), request, response,
+                        !failed ? "ok" : attempt.cancelled ? "cancelled" : "error");
+                replica.outstanding.decrementAndGet();
+                long elapsed = System.nanoTime() - start;
+                if (!failed) {
+                    replica.consecutiveFailures.set(0);
+                    replica.latency.record(elapsed, TimeUnit.NANOSECONDS);
+                    histogram.record(TimeUnit.NANOSECONDS.toMillis(elapsed));
+                } else if (!attempt.cancelled && replica.consecutiveFailures.incrementAndGet() >= ejectAfterFailures) {
+                    // Cancelled attempts (hedge losers, closed sessions) say nothing about the replica's health
+                    replica.consecutiveFailures.set(0);
+                    replica.ejectedUntil = System.nanoTime() + ejectionNanos;
+                    ejections.increment();
+                    log.warn("Ejecting MCP replica {} for {} ms", replica.uri, TimeUnit.NANOSECONDS.toMillis(ejectionNanos));
+                }
+            }
+        });
+        return attempt;
+    }
+
+    private String firstSuccessful(Attempt first, Attempt hedge) {
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.result.whenComplete((result, error) -> {
+            if (error == null) winner.complete(result);
+            else if (failures.incrementAndGet() == 2) winner.completeExceptionally(error);
+        });
+        hedge.result.whenComplete((result, error) -> {
+            if (error == null) {
+                if (winner.complete(result)) hedgeWins.increment();
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        });
+        try {
+            return await(winner, first, hedge);
+        } finally {
+            first.cancel("hedge lost");
+            hedge.cancel("hedge lost");
+        }
+    }
+
+    // Tells the replica to stop working on a request nobody will read; best effort, fire and forget
+    private void sendCancelled(Replica replica, String requestId, String reason) {
+        try {
+            executor.execute(() -> {
+                try {
+                    weatherClient.callTool(replica.uri, cancelOptions, WeatherRpcCodec.cancelledNotification(requestId, reason));
+                } catch (Exception e) {
+                    log.debug("Could not send cancellation for {} to {}", requestId, replica.uri, e);
+                }
+            });
+        } catch (RejectedExecutionException _) {
+            // Shutting down
+        }
+    }
+
+    // Least outstanding requests among healthy replicas, starting at a random offset to break ties
+    private Replica select(Replica exclude) {
+        long now = System.nanoTime();
+        int size = replicas.size();
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        Replica best = null;
+        Replica fallback = null;
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((offset + i) % size);
+            if (candidate == exclude) continue;
+            if (candidate.ejected(now)) {
+                if (fallback == null || candidate.ejectedUntil - fallback.ejectedUntil < 0) fallback = candidate;
+                continue;
+            }
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) best = candidate;
+        }
+        // Every replica is ejected: fail open on the one that comes back first
+        return best != null ? best : fallback;
+    }
+
+    private static String await(Attempt attempt) {
+        return await(attempt.result, attempt);
+    }
+
+    // Waits for the result; if the caller is interrupted (e.g. its session closed), the attempts are cancelled
+    private static String await(CompletableFuture<String> future, Attempt... attempts) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Attempt attempt : attempts) attempt.cancel("interrupted");
+            throw new IllegalStateException("Interrupted while calling MCP server", e);
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,163 @@
+package org.jugistanbul;
+
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Sends each model-bound message to a small, fast model or to the configured (strong) one (chat.llm.router.enabled).
+// Classification is a few string checks, far cheaper than any model call: greetings and short plain questions go
+// to the fast model; long messages and ones asking to explain, compare, plan or write go to the strong model.
+// A fast answer that fails the confidence check (empty, too short, or hedging) or a failed fast call is retried
+// once on the strong model, so routing trades latency only where the small model copes.
+@Component
+public class ModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+    private static final Pattern GREETING = Pattern.compile(
+            "^(hi|hello|hey|merhaba|selam|thanks|thank you|good (morning|afternoon|evening|night)|bye|goodbye)\\b.*",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMPLEX = Pattern.compile(
+            "\\b(why|explain|compare|difference|versus|vs|plan|steps|how (do|does|can|should|would)|analy[sz]e|write|"
+                    + "summari[sz]e|recommend|pros|cons|itinerary|detailed)\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern HEDGING = Pattern.compile(
+            "\\b(i('m| am) not sure|i don'?t know|i do not know|i cannot|i can'?t help|unable to|as an ai)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    public enum Tier { FAST, STRONG }
+
+    private final boolean enabled;
+    private final ChatBot strongBot;
+    private final ChatBot fastBot;
+    private final String strongModel;
+    private final String fastModel;
+    private final OllamaContextCache contexts;
+    private final RequestLog requestLog;
+    private final int shortChars;
+    private final int longChars;
+    private final int minReplyChars;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> routes = new ConcurrentHashMap<>();
+    private final Counter escalations;
+    private final Timer fastLatency;
+    private final Timer strongLatency;
+
+    public ModelRouter(ChatBot chatBot, OllamaContextCache contexts, RequestLog requestLog, MeterRegistry meterRegistry,
+                       @Value("${chat.llm.router.enabled:false}") boolean enabled,
+                       @Value("${langchain4j.ollama.chat-model.base-url:http://localhost:11434}") String baseUrl,
+                       @Value("${langchain4j.ollama.chat-model.model-name:llama3.2}") String strongModel,
+                       @Value("${chat.llm.router.fast-model:llama3.2:1b}") String fastModel,
+                       @Value("${chat.llm.router.fast-timeout:15s}") Duration fastTimeout,
+                       @Value("${chat.llm.router.short-chars:120}") int shortChars,
+                       @Value("${chat.llm.router.long-chars:280}") int longChars,
+                       @Value("${chat.llm.router.min-reply-chars:2}") int minReplyChars) {
+        this.enabled = enabled;
+        this.strongBot = chatBot;
+        this.strongModel = strongModel;
+        this.fastModel = fastModel;
+        this.contexts = contexts;
+        this.requestLog = requestLog;
+        // Same system prompt (from the ChatBot interface), smaller model, shorter timeout and no retries:
+        // a slow fast-model call is better escalated than retried
+        this.fastBot = enabled
+                ? AiServices.create(ChatBot.class, OllamaChatModel.builder()
+                        .baseUrl(baseUrl)
+                        .modelName(fastModel)
+                        .timeout(fastTimeout)
+                        .maxRetries(0)
+                        .build())
+                : chatBot;
+        this.shortChars = shortChars;
+        this.longChars = longChars;
+        this.minReplyChars = minReplyChars;
+        this.meterRegistry = meterRegistry;
+        this.escalations = meterRegistry.counter("chat.llm.escalations");
+        this.fastLatency = meterRegistry.timer("chat.llm.model.latency", "model", fastModel, "tier", "fast");
+        this.strongLatency = meterRegistry.timer("chat.llm.model.latency", "model", strongModel, "tier", "strong");
+    }
+
+    public String chat(String session, String message) {
+        long start = System.nanoTime();
+        String reply = null;
+        RuntimeException failure = null;
+        try {
+            reply = answer(session, message);
+            return reply;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            // The caller's request log line carries the stack trace
+            requestLog.record("llm", session, System.nanoTime() - start, failure != null,
+                    failure != null ? JfrEvents.outcome(failure) : "ok", new RequestLog.Exchange(message, reply), null);
+        }
+    }
+
+    private String answer(String session, String message) {
+        if (!enabled) return contexts.chat(session, message, strongModel, strongBot);
+        String reason = classify(message);
+        Tier tier = "greeting".equals(reason) || "short".equals(reason) ? Tier.FAST : Tier.STRONG;
+        route(tier, reason).increment();
+        if (tier == Tier.STRONG) return strong(session, message);
+        String reply;
+        try {
+            reply = fastLatency.recordCallable(() -> contexts.chat(session, message, fastModel, fastBot));
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted() || e instanceof RequestDeadline.DeadlineExceededException) {
+                throw e instanceof RuntimeException runtime ? runtime : new IllegalStateException(e);
+            }
+            log.debug("Fast model failed, escalating: {}", e.toString());
+            return escalate(session, message);
+        }
+        if (!confident(reply)) return escalate(session, message);
+        return reply;
+    }
+
+    public void forget(String session) {
+        contexts.forget(session);
+    }
+
+    // Reason names double as the route metric's tag; FAST for "greeting" and "short"
+    String classify(String message) {
+        String text = message.trim();
+        if (text.length() > longChars) return "long";
+        if (COMPLEX.matcher(text).find()) return "complex";
+        // More than one question, or several sentences, needs more than a quick answer
+        if (text.chars().filter(c -> c == '?').count() > 1 || text.split("[.!?]+\\s+").length > 2) return "multi-part";
+        if (GREETING.matcher(text).matches()) return "greeting";
+        if (text.length() <= shortChars) return "short";
+        return "default";
+    }
+
+    boolean confident(String reply) {
+        if (reply == null) return false;
+        String text = reply.trim();
+        return text.length() >= minReplyChars && !HEDGING.matcher(text).find();
+    }
+
+    private String escalate(String session, String message) {
+        escalations.increment();
+        route(Tier.STRONG, "escalated").increment();
+        return strong(session, message);
+    }
+
+    private String strong(String session, String message) {
+        return strongLatency.record(() -> contexts.chat(session, message, strongModel, strongBot));
+    }
+
+    private Counter route(Tier tier, String reason) {
+        return routes.computeIfAbsent(tier + ":" + reason, key -> meterRegistry.counter("chat.llm.route",
+                "tier", tier.name().toLowerCase(), "reason", reason));
+    }
+}
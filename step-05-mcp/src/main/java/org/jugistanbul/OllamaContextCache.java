@@ -0,0 +1,116 @@
+package org.jugistanbul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Session-aware model calls (chat.llm.context-reuse.enabled). Ollama answers /api/generate with a context token
+// array standing for the whole conversation so far; keeping it per session means the next turn sends only the
+// new user message, and Ollama skips evaluating the prefix its KV cache still holds (keep-alive keeps the model,
+// and with it that cache, loaded between turns). The system prompt is sent on a session's first turn only.
+// A context is dropped when its prefix no longer matches (model or system prompt changed, e.g. ModelRouter sent
+// this turn to the other model), when it grows past max-context-tokens (Ollama would silently truncate it), after
+// idle-timeout, when the session closes, and after a failed call. Two messages of one session in flight at once
+// both build on the same context and the later reply wins. Disabled, or without a session (an anonymous REST caller),
+// calls go through the given ChatBot unchanged.
+@Component
+public class OllamaContextCache {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private record Context(int prefix, int[] tokens, long lastUsed) {
+    }
+
+    private final OllamaGenerateClient generateClient;
+    private final boolean enabled;
+    private final String keepAlive;
+    private final int maxContextTokens;
+    private final int maxSessions;
+    private final long idleTimeoutNanos;
+    private final Map<String, Context> contexts = new ConcurrentHashMap<>();
+    private volatile long lastSweep;
+    private final Counter reused;
+    private final Counter started;
+    private final Counter invalidated;
+    private final DistributionSummary promptTokens;
+
+    public OllamaContextCache(OllamaGenerateClient generateClient, MeterRegistry meterRegistry,
+                              @Value("${chat.llm.context-reuse.enabled:false}") boolean enabled,
+                              @Value("${chat.llm.context-reuse.keep-alive:30m}") String keepAlive,
+                              @Value("${chat.llm.context-reuse.max-context-tokens:1536}") int maxContextTokens,
+                              @Value("${chat.llm.context-reuse.max-sessions:10000}") int maxSessions,
+                              @Value("${chat.llm.context-reuse.idle-timeout:30m}") Duration idleTimeout) {
+        this.generateClient = generateClient;
+        this.enabled = enabled;
+        this.keepAlive = keepAlive;
+        this.maxContextTokens = maxContextTokens;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.reused = meterRegistry.counter("chat.llm.context", "outcome", "reused");
+        this.started = meterRegistry.counter("chat.llm.context", "outcome", "started");
+        this.invalidated = meterRegistry.counter("chat.llm.context", "outcome", "invalidated");
+        // Tokens Ollama actually evaluated (cached prefix excluded)
+        this.promptTokens = DistributionSummary.builder("chat.llm.prompt.evaluated")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.llm.context.sessions", contexts, Map::size);
+    }
+
+    // chatBot answers with the same model when context reuse is off or session is null
+    public String chat(String session, String message, String model, ChatBot chatBot) {
+        if (!enabled || session == null) return chatBot.chat(message);
+        long now = System.nanoTime();
+        // Identifies what a context was built on; a context with another prefix cannot be continued
+        int prefix = (model + '\n' + ChatBot.SYSTEM_PROMPT).hashCode();
+        Context context = contexts.get(session);
+        if (context != null && (context.prefix != prefix || now - context.lastUsed > idleTimeoutNanos
+                || context.tokens.length > maxContextTokens)) {
+            contexts.remove(session, context);
+            invalidated.increment();
+            context = null;
+        }
+        OllamaGenerateClient.GenerateRequest request = context != null
+                ? new OllamaGenerateClient.GenerateRequest(model, message, null, context.tokens, false, keepAlive)
+                : new OllamaGenerateClient.GenerateRequest(model, message, ChatBot.SYSTEM_PROMPT, null, false, keepAlive);
+        OllamaGenerateClient.GenerateResponse response;
+        try {
+            response = generateClient.generate(request);
+        } catch (RuntimeException e) {
+            // The model may have been swapped or the context rejected: start over next turn
+            if (context != null) contexts.remove(session, context);
+            throw e;
+        }
+        if (context != null) reused.increment();
+        else started.increment();
+        if (response.promptEvalCount() != null) promptTokens.record(response.promptEvalCount());
+        if (response.context() != null && response.context().length > 0) remember(session, prefix, response.context(), now);
+        return response.response();
+    }
+
+    // The session is gone (WebSocket closed); its context will not be continued
+    public void forget(String session) {
+        contexts.remove(session);
+    }
+
+    private void remember(String session, int prefix, int[] tokens, long now) {
+        if (contexts.size() >= maxSessions && !contexts.containsKey(session)) {
+            sweep(now);
+            if (contexts.size() >= maxSessions) return;
+        }
+        contexts.put(session, new Context(prefix, tokens, now));
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep;
+        if (last != 0 && now - last < SWEEP_INTERVAL_NANOS) return;
+        lastSweep = now;
+        contexts.values().removeIf(context -> now - context.lastUsed > idleTimeoutNanos);
+    }
+}
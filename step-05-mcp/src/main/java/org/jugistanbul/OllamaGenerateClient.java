@@ -0,0 +1,28 @@
+package org.jugistanbul;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+// Ollama's /api/generate, which (unlike /api/chat) returns the conversation as a context token array that can be
+// sent back instead of the text it stands for
+@FeignClient(name = "ollama-generate", url = "${langchain4j.ollama.chat-model.base-url:http://localhost:11434}")
+public interface OllamaGenerateClient {
+
+    @PostMapping("/api/generate")
+    GenerateResponse generate(@RequestBody GenerateRequest request);
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record GenerateRequest(String model, String prompt, String system, int[] context, boolean stream,
+                           @JsonProperty("keep_alive") String keepAlive) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record GenerateResponse(String response, int[] context,
+                            @JsonProperty("prompt_eval_count") Integer promptEvalCount,
+                            @JsonProperty("prompt_eval_duration") Long promptEvalDuration) {
+    }
+}
@@ -0,0 +1,52 @@
+package org.jugistanbul;
+
+import io.micrometer.context.ContextRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+// Deadline of the chat request handled on the current thread (System.nanoTime based). It is registered
+// with the context-propagation registry, so the context-propagating executors carry it into the tool
+// calls made on behalf of the request, and McpReplicaRouter forwards the remaining budget to the server.
+final class RequestDeadline {
+
+    static final String CONTEXT_KEY = "chat.request.deadline";
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(CONTEXT_KEY, CURRENT::get, CURRENT::set, CURRENT::remove);
+    }
+
+    static class DeadlineExceededException extends RuntimeException {
+        DeadlineExceededException() {
+            super("Request deadline exceeded", null, false, false);
+        }
+    }
+
+    private RequestDeadline() {
+    }
+
+    // Runs the work with the given budget; an enclosing, earlier deadline still wins
+    static <T> T within(Duration budget, Callable<T> work) throws Exception {
+        Long outer = CURRENT.get();
+        long deadline = System.nanoTime() + budget.toNanos();
+        if (outer != null && outer - deadline < 0) deadline = outer;
+        CURRENT.set(deadline);
+        try {
+            return work.call();
+        } finally {
+            if (outer != null) CURRENT.set(outer);
+            else CURRENT.remove();
+        }
+    }
+
+    // Remaining budget in nanoseconds, Long.MAX_VALUE without a deadline (may be negative once passed)
+    static long remainingNanos() {
+        Long deadline = CURRENT.get();
+        return deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    static void check() {
+        if (remainingNanos() <= 0) throw new DeadlineExceededException();
+    }
+}
@@ -1,5 +1,6 @@
 package org.jugistanbul;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -10,15 +11,27 @@ import org.springframework.security.web.SecurityFilterChain;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Bearer tokens for /api/chat (security.jwt.enabled), validated through CachedJwtDecoder
+    private final boolean jwtEnabled;
+
+    public SecurityConfig(@Value("${security.jwt.enabled:false}") boolean jwtEnabled) {
+        this.jwtEnabled = jwtEnabled;
+    }
+
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, CachedJwtDecoder jwtDecoder) throws Exception {
         http
-            .authorizeHttpRequests(authorize -> authorize
-                .requestMatchers("/_static/**", "/webjars/**", "/favicon.ico", "/api/chat", "/chat-bot").permitAll()
-                .anyRequest().authenticated()
-            )
+            .authorizeHttpRequests(authorize -> {
+                if (jwtEnabled) authorize.requestMatchers("/api/chat").authenticated();
+                authorize
+                    .requestMatchers("/_static/**", "/webjars/**", "/favicon.ico", "/api/chat", "/api/cities", "/chat-bot", "/actuator/health", "/actuator/metrics/**").permitAll()
+                    .anyRequest().authenticated();
+            })
             .oauth2Login(org.springframework.security.config.Customizer.withDefaults())
             .csrf(csrf -> csrf.disable());
+        if (jwtEnabled) {
+            http.oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.decoder(jwtDecoder)));
+        }
         return http.build();
     }
 }
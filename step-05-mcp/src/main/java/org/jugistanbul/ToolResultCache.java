@@ -0,0 +1,141 @@
+package org.jugistanbul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+// Near cache for the current-weather and city-suggestion MCP tools (mcp.near-cache.enabled): the text extracted
+// from a tools/call reply, keyed by tool name and normalized arguments (city name or prefix trimmed and lower-cased,
+// coordinates as sent), so the same question from many chat sessions is answered without the HTTP hop and
+// JSON-RPC round trip.
+// An entry lives as long as the server's freshness hint (result._meta.maxAgeSeconds, capped at max-ttl;
+// default-ttl without a hint, never for a zero hint or an error) and is dropped when unused for idle-timeout.
+// Bounded at max-entries: when full, expired and idle entries are swept (at most once per second) and new
+// results are not kept until there is room. Two sessions missing on the same key at once both call the server.
+@Component
+public class ToolResultCache {
+
+    // TYPEAHEAD: city suggestions for the chat page, kept apart so they do not skew the chat paths' hit ratios
+    public enum Path { REST, WEBSOCKET, TYPEAHEAD }
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final class Entry {
+        final String text;
+        final long expiresAt;
+        volatile long lastUsed;
+
+        Entry(String text, long expiresAt, long lastUsed) {
+            this.text = text;
+            this.expiresAt = expiresAt;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final McpReplicaRouter mcpRouter;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long defaultTtlNanos;
+    private final long maxTtlNanos;
+    private final long idleTimeoutNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long lastSweep;
+    private final Counter[] hits = new Counter[Path.values().length];
+    private final Counter[] misses = new Counter[Path.values().length];
+
+    public ToolResultCache(McpReplicaRouter mcpRouter, MeterRegistry meterRegistry,
+                           @Value("${mcp.near-cache.enabled:true}") boolean enabled,
+                           @Value("${mcp.near-cache.max-entries:10000}") int maxEntries,
+                           @Value("${mcp.near-cache.default-ttl:60s}") Duration defaultTtl,
+                           @Value("${mcp.near-cache.max-ttl:10m}") Duration maxTtl,
+                           @Value("${mcp.near-cache.idle-timeout:5m}") Duration idleTimeout) {
+        this.mcpRouter = mcpRouter;
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.defaultTtlNanos = defaultTtl.toNanos();
+        this.maxTtlNanos = maxTtl.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        for (Path path : Path.values()) {
+            String tag = path.name().toLowerCase(Locale.ROOT);
+            Counter hit = meterRegistry.counter("mcp.near-cache.requests", "path", tag, "outcome", "hit");
+            Counter miss = meterRegistry.counter("mcp.near-cache.requests", "path", tag, "outcome", "miss");
+            hits[path.ordinal()] = hit;
+            misses[path.ordinal()] = miss;
+            Gauge.builder("mcp.near-cache.hit.ratio", () -> {
+                        double total = hit.count() + miss.count();
+                        return total == 0 ? 0 : hit.count() / total;
+                    })
+                    .tag("path", tag)
+                    .register(meterRegistry);
+        }
+        meterRegistry.gauge("mcp.near-cache.size", entries, Map::size);
+    }
+
+    // Summary text for "Current weather by city"; null when the reply had none
+    public String city(Path path, String city, int requestId) {
+        String key = WeatherRpcCodec.CITY_TOOL + '\n' + WHITESPACE.matcher(city.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return text(path, key, () -> WeatherRpcCodec.cityRequest(city, requestId));
+    }
+
+    // Summary text for "Current weather"; null when the reply had none
+    public String coordinates(Path path, double latitude, double longitude, int requestId) {
+        StringBuilder key = new StringBuilder(WeatherRpcCodec.COORDS_TOOL.length() + 24).append(WeatherRpcCodec.COORDS_TOOL).append('\n');
+        WeatherRpcCodec.appendFixed(key, latitude, 6).append(',');
+        WeatherRpcCodec.appendFixed(key, longitude, 6);
+        return text(path, key.toString(), () -> WeatherRpcCodec.coordsRequest(latitude, longitude, requestId));
+    }
+
+    // JSON array of suggestions from "City suggestions"; null when the reply had none
+    public String citySuggestions(Path path, String prefix, int requestId) {
+        String key = WeatherRpcCodec.SUGGEST_TOOL + '\n' + WHITESPACE.matcher(prefix.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return text(path, key, () -> WeatherRpcCodec.suggestRequest(prefix, requestId));
+    }
+
+    private String text(Path path, String key, Supplier<String> request) {
+        if (!enabled) return WeatherRpcCodec.extractText(mcpRouter.callTool(request.get()));
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.expiresAt < 0 && now - entry.lastUsed <= idleTimeoutNanos) {
+                entry.lastUsed = now;
+                hits[path.ordinal()].increment();
+                return entry.text;
+            }
+            entries.remove(key, entry);
+        }
+        misses[path.ordinal()].increment();
+        WeatherRpcCodec.ToolText result = WeatherRpcCodec.extractResult(mcpRouter.callTool(request.get()));
+        if (result == null) return null;
+        // Measured from before the call, so an entry never outlives the hint
+        long ttlNanos = result.maxAgeSeconds() < 0 ? defaultTtlNanos
+                : Math.min(maxTtlNanos, TimeUnit.SECONDS.toNanos(result.maxAgeSeconds()));
+        if (ttlNanos > 0) remember(key, new Entry(result.text(), now + ttlNanos, now));
+        return result.text();
+    }
+
+    private void remember(String key, Entry entry) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            sweep(entry.lastUsed);
+            if (entries.size() >= maxEntries) return;
+        }
+        entries.put(key, entry);
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep;
+        if (last != 0 && now - last < SWEEP_INTERVAL_NANOS) return;
+        lastSweep = now;
+        entries.values().removeIf(entry -> now - entry.expiresAt >= 0 || now - entry.lastUsed > idleTimeoutNanos);
+    }
+}
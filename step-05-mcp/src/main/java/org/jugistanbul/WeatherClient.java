@@ -1,13 +1,20 @@
 package org.jugistanbul;
 
+import feign.Request;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.net.URI;
+
 @FeignClient(name = "weather-mcp", url = "http://localhost:8081")
 public interface WeatherClient {
 
     // JSON-RPC endpoint for MCP tools
     @PostMapping(value = "/mcp/messages", consumes = "application/json")
     String callTool(@RequestBody String jsonRpcRequestBody);
+
+    // Same endpoint on an explicit replica with per-call timeouts (see McpReplicaRouter)
+    @PostMapping(value = "/mcp/messages", consumes = "application/json")
+    String callTool(URI replica, Request.Options options, @RequestBody String jsonRpcRequestBody);
 }
@@ -0,0 +1,266 @@
+package org.jugistanbul;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Low-allocation JSON-RPC codec for the weather MCP tools: requests are written from fixed templates
+// and replies are read with a streaming parser that only pulls result.content[].text and current.*.
+final class WeatherRpcCodec {
+
+    static final String CITY_TOOL = "Current weather by city";
+    static final String COORDS_TOOL = "Current weather";
+    static final String SUGGEST_TOOL = "City suggestions";
+
+    private static final String CITY_PREFIX =
+            "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"" + CITY_TOOL + "\",\"arguments\":{\"city\":\"";
+    private static final String CITY_SUFFIX = "\"}},\"id\":";
+    private static final String COORDS_PREFIX =
+            "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"" + COORDS_TOOL + "\",\"arguments\":{\"latitude\":\"";
+    private static final String COORDS_MIDDLE = "\",\"longitude\":\"";
+    private static final String COORDS_SUFFIX = "\"}},\"id\":";
+    private static final String SUGGEST_PREFIX =
+            "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"" + SUGGEST_TOOL + "\",\"arguments\":{\"prefix\":\"";
+    private static final String PARAMS_START = "\"params\":{";
+    private static final String ID_FIELD = "\"id\":";
+    private static final String CANCELLED_PREFIX =
+            "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/cancelled\",\"params\":{\"requestId\":\"";
+
+    private WeatherRpcCodec() {
+    }
+
+    static String cityRequest(String city, int id) {
+        StringBuilder sb = new StringBuilder(CITY_PREFIX.length() + city.length() + 16);
+        sb.append(CITY_PREFIX);
+        appendEscaped(sb, city);
+        return sb.append(CITY_SUFFIX).append(id).append('}').toString();
+    }
+
+    static String suggestRequest(String prefix, int id) {
+        StringBuilder sb = new StringBuilder(SUGGEST_PREFIX.length() + prefix.length() + 16);
+        sb.append(SUGGEST_PREFIX);
+        appendEscaped(sb, prefix);
+        return sb.append(CITY_SUFFIX).append(id).append('}').toString();
+    }
+
+    static String coordsRequest(double latitude, double longitude, int id) {
+        StringBuilder sb = new StringBuilder(COORDS_PREFIX.length() + 48);
+        sb.append(COORDS_PREFIX);
+        appendFixed(sb, latitude, 6);
+        sb.append(COORDS_MIDDLE);
+        appendFixed(sb, longitude, 6);
+        return sb.append(COORDS_SUFFIX).append(id).append('}').toString();
+    }
+
+    // The same request with a unique id and, when bounded, the caller's remaining budget in params._meta.timeoutMs
+    static String forAttempt(String request, String id, long timeoutMillis) {
+        int params = request.indexOf(PARAMS_START) + PARAMS_START.length();
+        int idField = request.lastIndexOf(ID_FIELD);
+        StringBuilder sb = new StringBuilder(request.length() + id.length() + 40);
+        sb.append(request, 0, params);
+        if (timeoutMillis != Long.MAX_VALUE) sb.append("\"_meta\":{\"timeoutMs\":").append(timeoutMillis).append("},");
+        sb.append(request, params, idField).append(ID_FIELD).append('"');
+        appendEscaped(sb, id);
+        return sb.append("\"}").toString();
+    }
+
+    static String cancelledNotification(String id, String reason) {
+        StringBuilder sb = new StringBuilder(CANCELLED_PREFIX.length() + id.length() + reason.length() + 24);
+        sb.append(CANCELLED_PREFIX);
+        appendEscaped(sb, id);
+        sb.append("\",\"reason\":\"");
+        appendEscaped(sb, reason);
+        return sb.append("\"}}").toString();
+    }
+
+    // First text content of a tools/call result, summarized when it is an Open-Meteo payload, and the server's
+    // freshness hint (result._meta.maxAgeSeconds; -1 when absent, 0 for error results)
+    record ToolText(String text, long maxAgeSeconds) {
+    }
+
+    // Returns the first text content of a tools/call reply, summarized when it is an Open-Meteo payload
+    static String extractText(String rpc) {
+        ToolText result = extractResult(rpc);
+        return result != null ? result.text() : null;
+    }
+
+    // Null when the reply has no text content
+    static ToolText extractResult(String rpc) {
+        if (rpc == null || rpc.isEmpty()) return null;
+        try (JsonReader reader = new JsonReader(new StringReader(rpc))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) return null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"result".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                return readResult(reader);
+            }
+        } catch (IOException | RuntimeException _) { /* ignore: caller falls back */ }
+        return null;
+    }
+
+    private static ToolText readResult(JsonReader reader) throws IOException {
+        String text = null;
+        long maxAgeSeconds = -1;
+        boolean isError = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("content".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                String found = readContentText(reader);
+                if (text == null) text = found;
+            } else if ("_meta".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("maxAgeSeconds".equals(reader.nextName()) && reader.peek() == JsonToken.NUMBER) {
+                        maxAgeSeconds = reader.nextLong();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if ("isError".equals(name) && reader.peek() == JsonToken.BOOLEAN) {
+                isError = reader.nextBoolean();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (text == null) return null;
+        String summary = summarize(text);
+        return new ToolText(summary != null ? summary : text, isError ? 0 : maxAgeSeconds);
+    }
+
+    private static String readContentText(JsonReader reader) throws IOException {
+        String text = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (text != null || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("text".equals(reader.nextName()) && text == null && reader.peek() != JsonToken.NULL) {
+                    text = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return text;
+    }
+
+    static String summarize(String text) {
+        if (text == null) return null;
+        int start = 0;
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) start++;
+        if (start == text.length() || text.charAt(start) != '{') return null;
+        try (JsonReader reader = new JsonReader(new StringReader(text))) {
+            reader.beginObject();
+            // The city tools name the place they resolved to (which may be a corrected spelling) ahead of the forecast
+            String city = null;
+            String country = null;
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                JsonToken token = reader.peek();
+                if ("current".equals(name) && token == JsonToken.BEGIN_OBJECT) {
+                    return summarizeCurrent(reader, city, country);
+                } else if ("city".equals(name) && token == JsonToken.STRING) {
+                    city = reader.nextString();
+                } else if ("country".equals(name) && token == JsonToken.STRING) {
+                    country = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException | RuntimeException _) { /* not a forecast payload */ }
+        return null;
+    }
+
+    private static String summarizeCurrent(JsonReader reader, String city, String country) throws IOException {
+        String time = "unknown time";
+        double temp = Double.NaN;
+        double wind = Double.NaN;
+        double precip = Double.NaN;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "time" -> time = reader.nextString();
+                case "temperature_2m" -> temp = reader.nextDouble();
+                case "wind_speed_10m" -> wind = reader.nextDouble();
+                case "precipitation" -> precip = reader.nextDouble();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return formatSummary(city, country, time, temp, wind, precip);
+    }
+
+    // NaN marks a missing field; city and country may be null
+    static String formatSummary(String city, String country, String time, double temp, double wind, double precip) {
+        StringBuilder sb = new StringBuilder(96).append("Current weather");
+        if (city != null) {
+            sb.append(" in ").append(city);
+            if (country != null) sb.append(", ").append(country);
+        }
+        sb.append(": ");
+        boolean hasPrev = false;
+        if (!Double.isNaN(temp)) {
+            appendFixed(sb, temp, 1).append("°C");
+            hasPrev = true;
+        }
+        if (!Double.isNaN(wind)) {
+            if (hasPrev) sb.append(", ");
+            appendFixed(sb.append("wind "), wind, 1).append(" km/h");
+            hasPrev = true;
+        }
+        if (!Double.isNaN(precip)) {
+            if (hasPrev) sb.append(", ");
+            appendFixed(sb.append("precipitation "), precip, 2).append(" mm");
+        }
+        return sb.append(" (as of ").append(time).append(')').toString();
+    }
+
+    // Same output as String.format("%.Nf"): HALF_UP on the shortest decimal form of the value (so 1.005 -> "1.01")
+    // and the sign kept when the value rounds to zero (-0.04 -> "-0.0"), without the Formatter machinery
+    static StringBuilder appendFixed(StringBuilder sb, double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return sb.append(value);
+        if (Double.doubleToRawLongBits(value) < 0) sb.append('-');
+        return sb.append(BigDecimal.valueOf(Math.abs(value)).setScale(decimals, RoundingMode.HALF_UP).toPlainString());
+    }
+
+    private static void appendEscaped(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,24 +1,51 @@
 package org.jugistanbul;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.lang.NonNull;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ChatBotWebSocketHandler chatBotWebSocketHandler;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final boolean compression;
 
-    public WebSocketConfig(ChatBotWebSocketHandler chatBotWebSocketHandler) {
+    public WebSocketConfig(ChatBotWebSocketHandler chatBotWebSocketHandler, WebSocketSessionRegistry sessionRegistry,
+                           @Value("${chat.websocket.compression:true}") boolean compression,
+                           @Value("${chat.websocket.density.enabled:false}") boolean density,
+                           @Value("${chat.websocket.density.compression:false}") boolean densityCompression) {
         this.chatBotWebSocketHandler = chatBotWebSocketHandler;
+        this.sessionRegistry = sessionRegistry;
+        // The density mode has its own switch, off by default: deflater state would dwarf the shrunken buffers
+        this.compression = density ? densityCompression : compression;
     }
 
     @Override
     public void registerWebSocketHandlers(@NonNull WebSocketHandlerRegistry registry) {
-        registry.addHandler(chatBotWebSocketHandler, "/chat-bot")
+        registry.addHandler(sessionRegistry.track(chatBotWebSocketHandler), "/chat-bot")
+                .setHandshakeHandler(new DefaultHandshakeHandler() {
+                    @Override
+                    @NonNull
+                    protected List<WebSocketExtension> filterRequestedExtensions(@NonNull ServerHttpRequest request,
+                                                                                 @NonNull List<WebSocketExtension> requested,
+                                                                                 @NonNull List<WebSocketExtension> supported) {
+                        List<WebSocketExtension> accepted = super.filterRequestedExtensions(request, requested, supported);
+                        // permessage-deflate is negotiated by Tomcat when offered; it costs deflater state per session
+                        return compression ? accepted : accepted.stream()
+                                .filter(extension -> !"permessage-deflate".equals(extension.getName()))
+                                .toList();
+                    }
+                })
                 .setAllowedOrigins("*");
     }
 }
@@ -0,0 +1,44 @@
+package org.jugistanbul;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import java.time.Duration;
+
+// High-density session mode: small per-session container and socket buffers (the former also cap the message
+// size) and a connection limit sized for many mostly idle chat sessions on one node.
+@Configuration
+@ConditionalOnProperty(name = "chat.websocket.density.enabled", havingValue = "true")
+public class WebSocketDensityConfig {
+
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(
+            @Value("${chat.websocket.density.text-buffer-size:2048}") int textBufferSize,
+            @Value("${chat.websocket.density.binary-buffer-size:1024}") int binaryBufferSize,
+            @Value("${chat.websocket.send-time-limit:10s}") Duration sendTimeLimit) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(textBufferSize);
+        container.setMaxBinaryMessageBufferSize(binaryBufferSize);
+        container.setAsyncSendTimeout(sendTimeLimit.toMillis());
+        // Idle eviction is driven by WebSocketSessionRegistry, whose pings would keep resetting this timer anyway
+        container.setMaxSessionIdleTimeout(0L);
+        return container;
+    }
+
+    // Every connection also holds a socket read and write buffer (8 KiB each by default) for its whole life
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> webSocketConnectionLimit(
+            @Value("${chat.websocket.density.max-connections:120000}") int maxConnections,
+            @Value("${chat.websocket.density.socket-buffer-size:2048}") int socketBufferSize) {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            connector.setProperty("maxConnections", Integer.toString(maxConnections));
+            connector.setProperty("socket.appReadBufSize", Integer.toString(socketBufferSize));
+            connector.setProperty("socket.appWriteBufSize", Integer.toString(socketBufferSize));
+        });
+    }
+}
@@ -0,0 +1,193 @@
+package org.jugistanbul;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Live registry of chat WebSocket sessions. Every session is wrapped for thread-safe, bounded sends,
+// pinged periodically, and evicted when it stops answering pings or the user has been idle too long.
+// Pings and evictions are sent from virtual threads, one in flight per session, so a client that stops reading
+// (and blocks its send until Tomcat's send timeout) holds up only itself, not the sweep over all the others.
+// Memory per session is estimated from the configured container buffers plus pending send buffers.
+@Component
+public class WebSocketSessionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(WebSocketSessionRegistry.class);
+    // Fixed cost of a Tomcat WebSocket session besides its buffers (frame handlers, endpoint, socket wrapper, Spring
+    // session adapter), measured with load-harness's density profile
+    private static final long BASE_SESSION_BYTES = 13 * 1024;
+    // zlib deflate + inflate state kept per session when permessage-deflate is negotiated (mostly native memory)
+    private static final long DEFLATE_SESSION_BYTES = 300 * 1024;
+
+    private static final class TrackedSession {
+        final ConcurrentWebSocketSessionDecorator session;
+        final boolean compressed;
+        // A ping or close sent by the sweep that has not returned yet
+        final AtomicBoolean keepalivePending = new AtomicBoolean();
+        volatile long lastSeen;
+        volatile long lastUserMessage;
+
+        TrackedSession(ConcurrentWebSocketSessionDecorator session, boolean compressed, long now) {
+            this.session = session;
+            this.compressed = compressed;
+            this.lastSeen = now;
+            this.lastUserMessage = now;
+        }
+    }
+
+    private final Map<String, TrackedSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService keepalive = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ws-keepalive").daemon().factory());
+    private final ExecutorService keepaliveSenders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ws-keepalive-send-", 0).factory());
+    private final int sendTimeLimitMillis;
+    private final int sendBufferLimit;
+    private final long pongTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long bufferBytesPerSession;
+
+    public WebSocketSessionRegistry(MeterRegistry meterRegistry,
+                                    @Value("${chat.websocket.send-time-limit:10s}") Duration sendTimeLimit,
+                                    @Value("${chat.websocket.send-buffer-limit:65536}") int sendBufferLimit,
+                                    @Value("${chat.websocket.ping-interval:30s}") Duration pingInterval,
+                                    @Value("${chat.websocket.pong-timeout:75s}") Duration pongTimeout,
+                                    @Value("${chat.websocket.idle-timeout:30m}") Duration idleTimeout,
+                                    @Value("${chat.websocket.density.enabled:false}") boolean densityMode,
+                                    @Value("${chat.websocket.density.text-buffer-size:2048}") int textBufferSize,
+                                    @Value("${chat.websocket.density.binary-buffer-size:1024}") int binaryBufferSize,
+                                    @Value("${chat.websocket.density.socket-buffer-size:2048}") int socketBufferSize) {
+        this.sendTimeLimitMillis = (int) sendTimeLimit.toMillis();
+        this.sendBufferLimit = sendBufferLimit;
+        this.pongTimeoutNanos = pongTimeout.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        // Tomcat keeps per session a socket read and write buffer, an output and an encoder buffer (the JVM-wide
+        // org.apache.tomcat.websocket.DEFAULT_BUFFER_SIZE), a char buffer for text messages and an input and a message
+        // buffer for binary ones; all 8 KiB by default
+        long webSocketBuffer = Integer.getInteger("org.apache.tomcat.websocket.DEFAULT_BUFFER_SIZE", 8192);
+        this.bufferBytesPerSession = densityMode
+                ? 2L * socketBufferSize + 2 * webSocketBuffer + 2L * textBufferSize + 2L * binaryBufferSize
+                : 2L * 8192 + 2 * webSocketBuffer + 2L * 8192 + 2L * 8192;
+        meterRegistry.gaugeMapSize("chat.websocket.sessions", Tags.empty(), sessions);
+        meterRegistry.gauge("chat.websocket.memory.estimated", this, WebSocketSessionRegistry::estimatedBytes);
+        meterRegistry.gauge("chat.websocket.memory.per-session", this, WebSocketSessionRegistry::estimatedBytesPerSession);
+        if (!pingInterval.isZero()) {
+            long period = pingInterval.toMillis();
+            keepalive.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public WebSocketHandler track(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                ConcurrentWebSocketSessionDecorator concurrent =
+                        new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, sendBufferLimit);
+                boolean compressed = session.getExtensions().stream()
+                        .anyMatch(extension -> "permessage-deflate".equals(extension.getName()));
+                sessions.put(session.getId(), new TrackedSession(concurrent, compressed, System.nanoTime()));
+                super.afterConnectionEstablished(concurrent);
+            }
+
+            @Override
+            public void handleMessage(@NonNull WebSocketSession session, @NonNull WebSocketMessage<?> message) throws Exception {
+                TrackedSession tracked = sessions.get(session.getId());
+                if (tracked == null) return;
+                long now = System.nanoTime();
+                tracked.lastSeen = now;
+                if (message instanceof PongMessage) return;
+                tracked.lastUserMessage = now;
+                super.handleMessage(tracked.session, message);
+            }
+
+            @Override
+            public void handleTransportError(@NonNull WebSocketSession session, @NonNull Throwable exception) throws Exception {
+                TrackedSession tracked = sessions.get(session.getId());
+                super.handleTransportError(tracked != null ? tracked.session : session, exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus) throws Exception {
+                TrackedSession tracked = sessions.remove(session.getId());
+                super.afterConnectionClosed(tracked != null ? tracked.session : session, closeStatus);
+            }
+        };
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (TrackedSession tracked : sessions.values()) {
+            // Still stuck on the previous round; it gets closed once that send fails or returns
+            if (!tracked.keepalivePending.compareAndSet(false, true)) continue;
+            try {
+                keepaliveSenders.execute(() -> keepalive(tracked, now));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                tracked.keepalivePending.set(false);
+            }
+        }
+    }
+
+    private void keepalive(TrackedSession tracked, long now) {
+        try {
+            if (now - tracked.lastSeen > pongTimeoutNanos) {
+                tracked.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } else if (now - tracked.lastUserMessage > idleTimeoutNanos) {
+                tracked.session.close(CloseStatus.GOING_AWAY.withReason("Idle timeout"));
+            } else {
+                tracked.session.sendMessage(new PingMessage());
+            }
+        } catch (Exception e) {
+            log.debug("Keepalive failed for session {}", tracked.session.getId(), e);
+        } finally {
+            tracked.keepalivePending.set(false);
+        }
+    }
+
+    private double estimatedBytes() {
+        long total = 0;
+        for (TrackedSession tracked : sessions.values()) {
+            total += BASE_SESSION_BYTES + bufferBytesPerSession
+                    + (tracked.compressed ? DEFLATE_SESSION_BYTES : 0)
+                    + tracked.session.getBufferSize();
+        }
+        return total;
+    }
+
+    private double estimatedBytesPerSession() {
+        int count = sessions.size();
+        return count == 0 ? BASE_SESSION_BYTES + bufferBytesPerSession : estimatedBytes() / count;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        keepalive.shutdownNow();
+        keepaliveSenders.shutdownNow();
+    }
+}
@@ -0,0 +1,62 @@
+package org.jugistanbul;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of ChatRateLimiter.tryAcquire with 16 threads on the same limiter. clients=1 puts every thread on one
+// client bucket and one address bucket (worst case for the CAS loop); clients=1024 spreads them over the stripes.
+// "granted" limits are high enough that every call takes tokens, "rejected" limits turn almost every call away.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ChatRateLimiterBenchmark {
+
+    @Param({"1", "1024"})
+    int clients;
+
+    @Param({"granted", "rejected"})
+    String outcome;
+
+    ChatRateLimiter limiter;
+    ChatRateLimiter.Caller[] callers;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        boolean granted = "granted".equals(outcome);
+        int perMinute = granted ? Integer.MAX_VALUE : 1;
+        int burst = granted ? Integer.MAX_VALUE : 1;
+        limiter = new ChatRateLimiter(new SimpleMeterRegistry(), true, perMinute, burst, perMinute, burst, 1, 100_000);
+        callers = new ChatRateLimiter.Caller[clients];
+        for (int i = 0; i < clients; i++) {
+            callers[i] = new ChatRateLimiter.Caller("user:bench-" + i, "10.0." + (i >> 8) + "." + (i & 0xff));
+        }
+    }
+
+    @Benchmark
+    public long tryAcquire(Cursor cursor) {
+        ChatRateLimiter.Caller caller = callers[cursor.next++ & (clients - 1)];
+        return limiter.tryAcquire(caller, ChatRateLimiter.Cost.TOOL, 1);
+    }
+}
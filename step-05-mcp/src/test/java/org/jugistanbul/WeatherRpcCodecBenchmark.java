@@ -0,0 +1,135 @@
+package org.jugistanbul;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Time and allocation per weather reply for WeatherRpcCodec against the Gson tree code it replaced (TreeCodec
+// below, as it was in ChatController). Run with -prof gc for gc.alloc.rate.norm (bytes per operation).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeatherRpcCodecBenchmark {
+
+    // A "Current weather" tools/call reply carrying Open-Meteo's current-conditions payload
+    static final String REPLY = "{\"jsonrpc\":\"2.0\",\"id\":2,\"result\":{\"content\":[{\"type\":\"text\",\"text\":"
+            + new Gson().toJson("{\"latitude\":41.02,\"longitude\":28.98,\"generationtime_ms\":0.031,\"utc_offset_seconds\":0,"
+            + "\"timezone\":\"GMT\",\"timezone_abbreviation\":\"GMT\",\"elevation\":37.0,\"current_units\":{\"time\":\"iso8601\","
+            + "\"interval\":\"seconds\",\"temperature_2m\":\"°C\",\"wind_speed_10m\":\"km/h\",\"precipitation\":\"mm\"},"
+            + "\"current\":{\"time\":\"2026-10-19T12:00\",\"interval\":900,\"temperature_2m\":18.4,\"wind_speed_10m\":12.3,"
+            + "\"precipitation\":0.0}}")
+            + "}],\"isError\":false,\"_meta\":{\"maxAgeSeconds\":600}}}";
+
+    final TreeCodec tree = new TreeCodec();
+
+    @Benchmark
+    public String replyStreaming() {
+        return WeatherRpcCodec.extractText(REPLY);
+    }
+
+    @Benchmark
+    public String replyTree() {
+        return tree.extractTextFromRpc(REPLY);
+    }
+
+    @Benchmark
+    public String coordsRequestTemplate() {
+        return WeatherRpcCodec.coordsRequest(41.0082, 28.9784, 2);
+    }
+
+    @Benchmark
+    public String coordsRequestTree() {
+        return tree.buildJsonRpcCoordsRequest(41.0082, 28.9784);
+    }
+
+    static final class TreeCodec {
+
+        private final Gson gson = new Gson();
+
+        String buildJsonRpcCoordsRequest(double latitude, double longitude) {
+            JsonObject args = new JsonObject();
+            args.addProperty("latitude", String.format("%.6f", latitude));
+            args.addProperty("longitude", String.format("%.6f", longitude));
+            JsonObject params = new JsonObject();
+            params.addProperty("name", "Current weather");
+            params.add("arguments", args);
+            JsonObject root = new JsonObject();
+            root.addProperty("jsonrpc", "2.0");
+            root.addProperty("method", "tools/call");
+            root.add("params", params);
+            root.addProperty("id", 2);
+            return gson.toJson(root);
+        }
+
+        String extractTextFromRpc(String rpc) {
+            if (rpc == null || rpc.isEmpty()) return null;
+            try {
+                JsonObject root = gson.fromJson(rpc, JsonObject.class);
+                if (!root.has("result") || !root.get("result").isJsonObject()) return null;
+                JsonObject result = root.getAsJsonObject("result");
+                if (!result.has("content") || !result.get("content").isJsonArray()) return null;
+                for (var el : result.getAsJsonArray("content")) {
+                    if (!el.isJsonObject()) continue;
+                    JsonObject c = el.getAsJsonObject();
+                    if (c.has("text") && !c.get("text").isJsonNull()) {
+                        String text = c.get("text").getAsString();
+                        String summary = summarizeIfJson(text);
+                        return summary != null ? summary : text;
+                    }
+                }
+            } catch (Exception _) { /* ignore */ }
+            return null;
+        }
+
+        private String summarizeIfJson(String text) {
+            String trimmed = text.trim();
+            if (!trimmed.startsWith("{")) return null;
+            try {
+                JsonObject obj = gson.fromJson(trimmed, JsonObject.class);
+                JsonObject current = obj.has("current") && obj.get("current").isJsonObject()
+                        ? obj.getAsJsonObject("current") : null;
+                if (current == null) return null;
+                String time = current.has("time") && !current.get("time").isJsonNull()
+                        ? current.get("time").getAsString() : "unknown time";
+                Double temp = current.has("temperature_2m") && !current.get("temperature_2m").isJsonNull()
+                        ? current.get("temperature_2m").getAsDouble() : null;
+                Double wind = current.has("wind_speed_10m") && !current.get("wind_speed_10m").isJsonNull()
+                        ? current.get("wind_speed_10m").getAsDouble() : null;
+                Double precip = current.has("precipitation") && !current.get("precipitation").isJsonNull()
+                        ? current.get("precipitation").getAsDouble() : null;
+                StringBuilder sb = new StringBuilder("Current weather: ");
+                boolean hasPrev = false;
+                if (temp != null) {
+                    sb.append(String.format("%.1f°C", temp));
+                    hasPrev = true;
+                }
+                if (wind != null) {
+                    if (hasPrev) sb.append(", ");
+                    sb.append(String.format("wind %.1f km/h", wind));
+                    hasPrev = true;
+                }
+                if (precip != null) {
+                    if (hasPrev) sb.append(", ");
+                    sb.append(String.format("precipitation %.2f mm", precip));
+                }
+                sb.append(" (as of ").append(time).append(")");
+                return sb.toString();
+            } catch (Exception _) {
+                return null;
+            }
+        }
+    }
+}
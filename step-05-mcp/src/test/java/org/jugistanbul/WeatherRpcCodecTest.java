@@ -0,0 +1,73 @@
+package org.jugistanbul;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WeatherRpcCodecTest {
+
+    @Test
+    void appendFixedMatchesStringFormat() {
+        double[] values = {0, -0.0, 1.005, 2.675, -0.04, -0.05, 0.05, 18.45, -7.25, 12.3, 0.125, 99.995,
+                41.0082, -28.9784, 1e12 + 0.5, 123456789.0000005, 1e-7, -1e-7};
+        for (double value : values) {
+            for (int decimals : new int[]{0, 1, 2, 6}) {
+                String expected = String.format(Locale.ROOT, "%." + decimals + "f", value);
+                assertEquals(expected, WeatherRpcCodec.appendFixed(new StringBuilder(), value, decimals).toString(),
+                        value + " at " + decimals + " decimals");
+            }
+        }
+    }
+
+    @Test
+    void extractResultReadsTextAndFreshness() {
+        String reply = "{\"jsonrpc\":\"2.0\",\"id\":\"a-1\",\"result\":{\"_meta\":{\"maxAgeSeconds\":300},"
+                + "\"content\":[{\"type\":\"image\"},{\"type\":\"text\",\"text\":\"Sunny\"},{\"type\":\"text\",\"text\":\"x\"}]}}";
+        assertEquals(new WeatherRpcCodec.ToolText("Sunny", 300), WeatherRpcCodec.extractResult(reply));
+
+        String error = "{\"jsonrpc\":\"2.0\",\"id\":2,\"result\":{\"content\":[{\"type\":\"text\",\"text\":\"City not found: X\"}],"
+                + "\"isError\":true,\"_meta\":{\"maxAgeSeconds\":300}}}";
+        assertEquals(new WeatherRpcCodec.ToolText("City not found: X", 0), WeatherRpcCodec.extractResult(error));
+
+        assertEquals(new WeatherRpcCodec.ToolText("Current weather: 18.4°C, wind 12.3 km/h, precipitation 0.00 mm (as of 2026-10-19T12:00)", 600),
+                WeatherRpcCodec.extractResult(WeatherRpcCodecBenchmark.REPLY));
+
+        String city = "{\"result\":{\"content\":[{\"type\":\"text\",\"text\":"
+                + "\"{\\\"city\\\":\\\"Paris\\\",\\\"country\\\":\\\"France\\\",\\\"current\\\":{\\\"time\\\":\\\"2026-10-19T12:00\\\",\\\"temperature_2m\\\":-0.04}}\"}]}}";
+        assertEquals(new WeatherRpcCodec.ToolText("Current weather in Paris, France: -0.0°C (as of 2026-10-19T12:00)", -1),
+                WeatherRpcCodec.extractResult(city));
+    }
+
+    @Test
+    void extractResultIsNullWithoutText() {
+        assertNull(WeatherRpcCodec.extractResult(null));
+        assertNull(WeatherRpcCodec.extractResult(""));
+        assertNull(WeatherRpcCodec.extractResult("not json"));
+        assertNull(WeatherRpcCodec.extractResult("{\"jsonrpc\":\"2.0\",\"id\":2,\"error\":{\"code\":-32602,\"message\":\"bad\"}}"));
+        assertNull(WeatherRpcCodec.extractResult("{\"result\":{\"content\":[{\"type\":\"text\",\"text\":null}]}}"));
+        assertNull(WeatherRpcCodec.extractResult("{\"result\":{\"content\":[{\"type\":\"text\",\"text\":\"cut off"));
+    }
+
+    @Test
+    void forAttemptSetsIdAndTimeout() {
+        String request = WeatherRpcCodec.cityRequest("Paris", 1);
+        assertEquals("{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"_meta\":{\"timeoutMs\":1500},"
+                        + "\"name\":\"Current weather by city\",\"arguments\":{\"city\":\"Paris\"}},\"id\":\"r-7\"}",
+                WeatherRpcCodec.forAttempt(request, "r-7", 1500));
+        assertEquals("{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{"
+                        + "\"name\":\"Current weather by city\",\"arguments\":{\"city\":\"Paris\"}},\"id\":\"r-\\\"8\\\"\"}",
+                WeatherRpcCodec.forAttempt(request, "r-\"8\"", Long.MAX_VALUE));
+    }
+
+    @Test
+    void forAttemptKeepsIdInsideArguments() {
+        // The request's own "id": field is the last one, even when an argument value contains the same text
+        String request = WeatherRpcCodec.cityRequest("\"id\":3", 4);
+        assertEquals("{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{"
+                        + "\"name\":\"Current weather by city\",\"arguments\":{\"city\":\"\\\"id\\\":3\"}},\"id\":\"x\"}",
+                WeatherRpcCodec.forAttempt(request, "x", Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.mcp.weather;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// Typeahead for city names, answered from CityIndex without upstream calls
+@RestController
+@RequestMapping("/cities")
+public class CityController {
+
+    private final CityIndex cityIndex;
+
+    public CityController(CityIndex cityIndex) {
+        this.cityIndex = cityIndex;
+    }
+
+    @GetMapping("/suggest")
+    public List<CityIndex.City> suggest(@RequestParam("q") String prefix,
+                                        @RequestParam(value = "limit", defaultValue = "5") int limit) {
+        return cityIndex.suggest(prefix, limit);
+    }
+}
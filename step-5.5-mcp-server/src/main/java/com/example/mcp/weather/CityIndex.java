@@ -0,0 +1,277 @@
+package com.example.mcp.weather;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// City names for typeahead and typo correction, held in a compressed prefix trie built once at startup from
+// weather.cities.file (or the bundled cities.tsv: name, country code, population per line). Names are matched
+// folded: lower case, accents and the Turkish dotless i removed, so "izmir" finds "İzmir". Every node keeps the
+// ids of the top-k most populous cities below it, so a prefix lookup is a walk down the trie and no scan.
+// When the prefix matches fewer than the requested number, prefixes one edit away (a deleted, swapped, replaced
+// or inserted character) fill the rest, most populous first. The trie is immutable, so lookups take no locks.
+@Component
+public class CityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CityIndex.class);
+    // Shorter prefixes are one edit away from too much to be useful
+    private static final int MIN_FUZZY_LENGTH = 3;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public record City(String name, String countryCode, long population) {
+    }
+
+    // label is the edge from the parent: the trie is compressed, so chains of single children are one node
+    private static final class Node {
+        final String label;
+        final char[] firsts;
+        final Node[] children;
+        final int[] cities;
+        final int[] top;
+
+        Node(String label, char[] firsts, Node[] children, int[] cities, int[] top) {
+            this.label = label;
+            this.firsts = firsts;
+            this.children = children;
+            this.cities = cities;
+            this.top = top;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(firsts, c);
+            return i >= 0 ? children[i] : null;
+        }
+    }
+
+    private final City[] cities;
+    // Folded names, sorted; ids index both arrays
+    private final String[] names;
+    private final char[] alphabet;
+    private final int topK;
+    private final Node root;
+    private final Timer exactLookups;
+    private final Timer fuzzyLookups;
+    private final Counter corrections;
+
+    public CityIndex(MeterRegistry meterRegistry,
+                     @Value("${weather.cities.file:}") String file,
+                     @Value("${weather.cities.top-k:10}") int topK) throws IOException {
+        this.topK = Math.max(1, topK);
+        List<City> loaded = load(file);
+        loaded.sort(Comparator.comparing(city -> fold(city.name())));
+        this.cities = loaded.toArray(new City[0]);
+        this.names = new String[cities.length];
+        Set<Character> chars = new TreeSet<>();
+        for (int i = 0; i < cities.length; i++) {
+            names[i] = fold(cities[i].name());
+            for (char c : names[i].toCharArray()) chars.add(c);
+        }
+        this.alphabet = new char[chars.size()];
+        int a = 0;
+        for (char c : chars) alphabet[a++] = c;
+        this.root = build("", 0, cities.length, 0);
+        this.exactLookups = meterRegistry.timer("weather.cities.suggest", "match", "prefix");
+        this.fuzzyLookups = meterRegistry.timer("weather.cities.suggest", "match", "one-edit");
+        this.corrections = meterRegistry.counter("weather.cities.corrections");
+        log.info("Indexed {} city names", cities.length);
+    }
+
+    // Most populous cities whose name starts with the prefix, then ones starting one edit away
+    public List<City> suggest(String prefix, int limit) {
+        long start = System.nanoTime();
+        String folded = fold(prefix);
+        int max = Math.min(Math.max(1, limit), topK);
+        if (folded.isEmpty()) return List.of();
+        Set<Integer> ids = new LinkedHashSet<>();
+        Node node = find(folded);
+        if (node != null) {
+            for (int i = 0; i < node.top.length && ids.size() < max; i++) ids.add(node.top[i]);
+        }
+        if (ids.size() == max || folded.length() < MIN_FUZZY_LENGTH) {
+            exactLookups.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return toCities(ids);
+        }
+        Set<Integer> fuzzy = new TreeSet<>(Comparator.comparingLong((Integer id) -> -cities[id].population()).thenComparing(id -> id));
+        // Inserting after the last character only extends the prefix: those are already in ids
+        forEachOneEdit(folded, false, variant -> {
+            Node match = find(variant);
+            if (match != null) {
+                for (int id : match.top) fuzzy.add(id);
+            }
+        });
+        for (int id : fuzzy) {
+            if (ids.size() == max) break;
+            ids.add(id);
+        }
+        fuzzyLookups.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return toCities(ids);
+    }
+
+    // The most populous known city one edit away from an unknown name, or null
+    public String correct(String name) {
+        String folded = fold(name);
+        if (folded.length() < MIN_FUZZY_LENGTH || exact(folded) != null) return null;
+        int[] best = {-1};
+        forEachOneEdit(folded, true, variant -> {
+            int[] ids = exact(variant);
+            if (ids == null) return;
+            for (int id : ids) {
+                if (best[0] < 0 || cities[id].population() > cities[best[0]].population()) best[0] = id;
+            }
+        });
+        if (best[0] < 0) return null;
+        corrections.increment();
+        return cities[best[0]].name();
+    }
+
+    // Lower case without accents and with single spaces
+    static String fold(String text) {
+        if (text == null) return "";
+        String folded = text.trim().replace('ı', 'i');
+        folded = MARKS.matcher(Normalizer.normalize(folded, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    // Node under which every name starts with the prefix
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.child(prefix.charAt(i));
+            if (child == null) return null;
+            int n = Math.min(child.label.length(), prefix.length() - i);
+            if (!child.label.regionMatches(0, prefix, i, n)) return null;
+            i += n;
+            node = child;
+        }
+        return node;
+    }
+
+    // Ids of the cities with exactly this folded name, or null
+    private int[] exact(String name) {
+        Node node = root;
+        int i = 0;
+        while (i < name.length()) {
+            Node child = node.child(name.charAt(i));
+            if (child == null || !name.startsWith(child.label, i)) return null;
+            i += child.label.length();
+            node = child;
+        }
+        return node.cities.length > 0 ? node.cities : null;
+    }
+
+    private void forEachOneEdit(String text, boolean insertAtEnd, Consumer<String> variant) {
+        StringBuilder sb = new StringBuilder(text.length() + 1);
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            sb.setLength(0);
+            variant.accept(sb.append(text, 0, i).append(text, i + 1, n).toString());
+            if (i + 1 < n && text.charAt(i) != text.charAt(i + 1)) {
+                sb.setLength(0);
+                variant.accept(sb.append(text, 0, i).append(text.charAt(i + 1)).append(text.charAt(i)).append(text, i + 2, n).toString());
+            }
+            for (char c : alphabet) {
+                if (c == text.charAt(i)) continue;
+                sb.setLength(0);
+                variant.accept(sb.append(text, 0, i).append(c).append(text, i + 1, n).toString());
+            }
+        }
+        for (int i = 0; i < (insertAtEnd ? n + 1 : n); i++) {
+            for (char c : alphabet) {
+                sb.setLength(0);
+                variant.accept(sb.append(text, 0, i).append(c).append(text, i, n).toString());
+            }
+        }
+    }
+
+    // names[from, to) share their first `depth` characters; those exactly `depth` long end at this node
+    private Node build(String label, int from, int to, int depth) {
+        int ends = from;
+        while (ends < to && names[ends].length() == depth) ends++;
+        List<Character> firsts = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        int start = ends;
+        while (start < to) {
+            char c = names[start].charAt(depth);
+            int end = start + 1;
+            while (end < to && names[end].charAt(depth) == c) end++;
+            // Sorted, so the first and last names bound the common prefix of the whole group
+            int common = depth + 1;
+            String first = names[start];
+            String last = names[end - 1];
+            while (common < first.length() && common < last.length() && first.charAt(common) == last.charAt(common)) common++;
+            firsts.add(c);
+            children.add(build(first.substring(depth, common), start, end, common));
+            start = end;
+        }
+        int[] here = new int[ends - from];
+        for (int i = 0; i < here.length; i++) here[i] = from + i;
+        char[] firstChars = new char[firsts.size()];
+        for (int i = 0; i < firstChars.length; i++) firstChars[i] = firsts.get(i);
+        return new Node(label, firstChars, children.toArray(new Node[0]), here, top(here, children));
+    }
+
+    private int[] top(int[] here, List<Node> children) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int id : here) candidates.add(id);
+        for (Node child : children) {
+            for (int id : child.top) candidates.add(id);
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparingLong((Integer id) -> -cities[id].population()).thenComparing(id -> id))
+                .limit(topK)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private List<City> toCities(Set<Integer> ids) {
+        List<City> result = new ArrayList<>(ids.size());
+        for (int id : ids) result.add(cities[id]);
+        return result;
+    }
+
+    private static List<City> load(String file) throws IOException {
+        try (InputStream in = file.isBlank()
+                ? CityIndex.class.getResourceAsStream("/cities.tsv")
+                : Files.newInputStream(Path.of(file))) {
+            List<City> loaded = new ArrayList<>();
+            if (in == null) return loaded;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] fields = line.split("\t");
+                String name = fields[0].trim();
+                if (fold(name).isEmpty()) continue;
+                String country = fields.length > 1 ? fields[1].trim() : "";
+                long population = fields.length > 2 && !fields[2].isBlank() ? Long.parseLong(fields[2].trim()) : 0;
+                loaded.add(new City(name, country, population));
+            }
+            return loaded;
+        }
+    }
+}
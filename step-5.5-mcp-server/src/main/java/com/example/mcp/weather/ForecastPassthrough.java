@@ -0,0 +1,303 @@
+package com.example.mcp.weather;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Passthrough mode for the current-weather tools (mcp.passthrough.enabled): the Open-Meteo body is not decoded
+// into a String, wrapped in a Map and re-escaped by Jackson. Its bytes are JSON-escaped straight from the upstream
+// stream into the text field of the tools/call response through pooled buffers; UTF-8 needs no decoding because
+// only ASCII quotes, backslashes and control characters are escaped. The envelope is what Jackson writes for a
+// JsonRpcResponse. A miss still keeps one String copy of the payload when the nearby cache is on, since the
+// cache serves later requests from it.
+@Component
+public class ForecastPassthrough {
+
+    static final Set<String> TOOLS = Set.of("Current weather", "Current weather by city");
+    private static final byte[] PREFIX = "{\"jsonrpc\":\"2.0\",\"result\":{\"content\":[{\"type\":\"text\",\"text\":\""
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // Longest escape of one input byte (\u001f) or one char (3 UTF-8 bytes, or 4 for a surrogate pair)
+    private static final int MAX_ESCAPED = 6;
+
+    // Passed to the journal and JFR in place of the tool result; the text is only rendered there
+    record Passed(String payload, long bytes) {
+        @Override
+        public String toString() {
+            return payload != null ? payload : "<" + bytes + " bytes passed through>";
+        }
+    }
+
+    private static final class Buffers {
+        final byte[] in;
+        final byte[] out;
+        // Upstream payload kept for the nearby cache; grows up to max-cached-payload and is reused
+        byte[] payload;
+        int outPosition;
+        int payloadLength;
+
+        Buffers(int size) {
+            this.in = new byte[size];
+            this.out = new byte[size];
+            this.payload = new byte[size];
+        }
+    }
+
+    private final boolean enabled;
+    private final WeatherClient weatherClient;
+    private final WeatherMcpServer weatherMcpServer;
+    private final HourlyForecastStore hourlyForecastStore;
+    private final NearbyForecastCache nearbyForecastCache;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int maxCachedPayload;
+    private final BlockingQueue<Buffers> pool;
+    // Ends the text field, carrying the same freshness hint as McpController's tool results
+    private final byte[] suffix;
+    private final Counter fromUpstream;
+    private final Counter fromNearby;
+
+    public ForecastPassthrough(WeatherClient weatherClient, WeatherMcpServer weatherMcpServer,
+                               HourlyForecastStore hourlyForecastStore, NearbyForecastCache nearbyForecastCache,
+                               ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                               @Value("${mcp.passthrough.enabled:false}") boolean enabled,
+                               @Value("${mcp.passthrough.buffer-size:8KB}") DataSize bufferSize,
+                               @Value("${mcp.passthrough.pool-size:64}") int poolSize,
+                               @Value("${mcp.passthrough.max-cached-payload:64KB}") DataSize maxCachedPayload,
+                               @Value("${mcp.freshness.current-max-age:5m}") Duration maxAge) {
+        this.enabled = enabled;
+        this.weatherClient = weatherClient;
+        this.weatherMcpServer = weatherMcpServer;
+        this.hourlyForecastStore = hourlyForecastStore;
+        this.nearbyForecastCache = nearbyForecastCache;
+        this.objectMapper = objectMapper;
+        this.bufferSize = (int) Math.max(MAX_ESCAPED * 16, bufferSize.toBytes());
+        this.maxCachedPayload = (int) maxCachedPayload.toBytes();
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        String meta = maxAge.toSeconds() > 0 ? ",\"_meta\":{\"maxAgeSeconds\":" + maxAge.toSeconds() + "}" : "";
+        this.suffix = ("\"}]" + meta + "},\"error\":null,\"id\":").getBytes(StandardCharsets.US_ASCII);
+        this.fromUpstream = meterRegistry.counter("mcp.passthrough.responses", "source", "upstream");
+        this.fromNearby = meterRegistry.counter("mcp.passthrough.responses", "source", "nearby");
+    }
+
+    public boolean handles(String tool) {
+        return enabled && TOOLS.contains(tool);
+    }
+
+    // Writes the complete JSON-RPC response. Nothing is written until the upstream status is known, so failures
+    // before that go through the normal error response; only a broken stream leaves a truncated body behind.
+    public Passed write(String tool, JsonNode arguments, Object id, HttpServletResponse response) throws IOException {
+        double lat;
+        double lon;
+        String latitude;
+        String longitude;
+        GeocodingResult place = null;
+        if ("Current weather by city".equals(tool)) {
+            String city = arguments.path("city").asText();
+            GeocodingResult first = weatherMcpServer.geocode(city);
+            if (first == null) {
+                String text = "City not found: " + city;
+                Buffers buffers = acquire();
+                try {
+                    writeText(text, id, response, buffers);
+                } finally {
+                    release(buffers);
+                }
+                return new Passed(text, text.length());
+            }
+            place = first;
+            lat = first.getLatitude();
+            lon = first.getLongitude();
+            latitude = Double.toString(lat);
+            longitude = Double.toString(lon);
+        } else {
+            latitude = arguments.path("latitude").asText();
+            longitude = arguments.path("longitude").asText();
+            lat = Double.parseDouble(latitude);
+            lon = Double.parseDouble(longitude);
+        }
+        hourlyForecastStore.track(lat, lon);
+        Buffers buffers = acquire();
+        try {
+            String cached = nearbyForecastCache.nearest(lat, lon);
+            if (cached != null) {
+                fromNearby.increment();
+                String text = place != null ? weatherMcpServer.withPlace(place, cached) : cached;
+                writeText(text, id, response, buffers);
+                return new Passed(text, text.length());
+            }
+            try (Response upstream = weatherClient.forecastResponse(latitude, longitude, WeatherMcpServer.CURRENT)) {
+                if (upstream.status() / 100 != 2 || upstream.body() == null) {
+                    throw new IllegalStateException("Open-Meteo returned HTTP " + upstream.status());
+                }
+                byte[] lead = place != null ? weatherMcpServer.placeLead(place).getBytes(StandardCharsets.UTF_8) : null;
+                long bytes = streamBody(upstream.body().asInputStream(), lead, id, response, buffers);
+                fromUpstream.increment();
+                String payload = null;
+                if (buffers.payloadLength >= 0) {
+                    payload = new String(buffers.payload, 0, buffers.payloadLength, StandardCharsets.UTF_8);
+                    nearbyForecastCache.put(lat, lon, payload);
+                }
+                return new Passed(payload, bytes);
+            }
+        } finally {
+            release(buffers);
+        }
+    }
+
+    // A lead (the opening of a JSON object) replaces the payload's opening brace; the cached payload stays as sent
+    private long streamBody(InputStream body, byte[] lead, Object id, HttpServletResponse response, Buffers buffers) throws IOException {
+        // -1 once the payload is too big to keep for the cache
+        buffers.payloadLength = nearbyForecastCache.enabled() ? 0 : -1;
+        ServletOutputStream out = begin(response, buffers);
+        boolean skipBrace = lead != null;
+        if (lead != null) {
+            for (byte b : lead) {
+                if (buffers.outPosition > buffers.out.length - MAX_ESCAPED) flush(out, buffers);
+                escape(buffers, b);
+            }
+        }
+        byte[] in = buffers.in;
+        long total = 0;
+        for (int read; (read = body.read(in)) != -1; ) {
+            total += read;
+            keep(buffers, in, read);
+            for (int i = 0; i < read; i++) {
+                if (skipBrace) {
+                    if (in[i] == ' ' || in[i] == '\n' || in[i] == '\r' || in[i] == '\t') continue;
+                    skipBrace = false;
+                    if (in[i] == '{') continue;
+                }
+                if (buffers.outPosition > buffers.out.length - MAX_ESCAPED) flush(out, buffers);
+                escape(buffers, in[i]);
+            }
+        }
+        end(out, id, buffers);
+        return total;
+    }
+
+    private void writeText(String text, Object id, HttpServletResponse response, Buffers buffers) throws IOException {
+        ServletOutputStream out = begin(response, buffers);
+        for (int i = 0; i < text.length(); i++) {
+            if (buffers.outPosition > buffers.out.length - MAX_ESCAPED) flush(out, buffers);
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                escape(buffers, (byte) c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                putUtf8(buffers, Character.toCodePoint(c, text.charAt(++i)));
+            } else {
+                putUtf8(buffers, Character.isSurrogate(c) ? '?' : c);
+            }
+        }
+        end(out, id, buffers);
+    }
+
+    private ServletOutputStream begin(HttpServletResponse response, Buffers buffers) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ServletOutputStream out = response.getOutputStream();
+        out.write(PREFIX);
+        buffers.outPosition = 0;
+        return out;
+    }
+
+    private void end(ServletOutputStream out, Object id, Buffers buffers) throws IOException {
+        flush(out, buffers);
+        out.write(suffix);
+        out.write(objectMapper.writeValueAsBytes(id));
+        out.write('}');
+    }
+
+    private void keep(Buffers buffers, byte[] in, int read) {
+        if (buffers.payloadLength < 0) return;
+        int needed = buffers.payloadLength + read;
+        if (needed > maxCachedPayload) {
+            buffers.payloadLength = -1;
+            return;
+        }
+        if (needed > buffers.payload.length) {
+            buffers.payload = Arrays.copyOf(buffers.payload, Math.min(maxCachedPayload, Math.max(needed, buffers.payload.length * 2)));
+        }
+        System.arraycopy(in, 0, buffers.payload, buffers.payloadLength, read);
+        buffers.payloadLength = needed;
+    }
+
+    // Bytes of multi-byte UTF-8 sequences are >= 0x80 and pass through unchanged
+    private static void escape(Buffers buffers, byte b) {
+        byte[] out = buffers.out;
+        int p = buffers.outPosition;
+        if (b == '"' || b == '\\') {
+            out[p++] = '\\';
+            out[p++] = b;
+        } else if (b >= 0 && b < 0x20) {
+            out[p++] = '\\';
+            switch (b) {
+                case '\n' -> out[p++] = 'n';
+                case '\r' -> out[p++] = 'r';
+                case '\t' -> out[p++] = 't';
+                case '\b' -> out[p++] = 'b';
+                case '\f' -> out[p++] = 'f';
+                default -> {
+                    out[p++] = 'u';
+                    out[p++] = '0';
+                    out[p++] = '0';
+                    out[p++] = HEX[b >> 4];
+                    out[p++] = HEX[b & 0xF];
+                }
+            }
+        } else {
+            out[p++] = b;
+        }
+        buffers.outPosition = p;
+    }
+
+    private static void putUtf8(Buffers buffers, int codePoint) {
+        byte[] out = buffers.out;
+        int p = buffers.outPosition;
+        if (codePoint < 0x800) {
+            out[p++] = (byte) (0xC0 | codePoint >> 6);
+        } else if (codePoint < 0x10000) {
+            out[p++] = (byte) (0xE0 | codePoint >> 12);
+            out[p++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+        } else {
+            out[p++] = (byte) (0xF0 | codePoint >> 18);
+            out[p++] = (byte) (0x80 | (codePoint >> 12 & 0x3F));
+            out[p++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+        }
+        out[p++] = (byte) (0x80 | (codePoint & 0x3F));
+        buffers.outPosition = p;
+    }
+
+    private static void flush(ServletOutputStream out, Buffers buffers) throws IOException {
+        if (buffers.outPosition == 0) return;
+        out.write(buffers.out, 0, buffers.outPosition);
+        buffers.outPosition = 0;
+    }
+
+    private Buffers acquire() {
+        Buffers buffers = pool.poll();
+        return buffers != null ? buffers : new Buffers(bufferSize);
+    }
+
+    // A payload buffer that grew for one large response is not kept around
+    private void release(Buffers buffers) {
+        if (buffers.payload.length > bufferSize) buffers.payload = new byte[bufferSize];
+        pool.offer(buffers);
+    }
+}
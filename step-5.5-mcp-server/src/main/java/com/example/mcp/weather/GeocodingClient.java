@@ -4,7 +4,7 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "geocoding-client", url = "https://geocoding-api.open-meteo.com")
+@FeignClient(name = "geocoding-client", url = "${open-meteo.geocoding-url:https://geocoding-api.open-meteo.com}")
 public interface GeocodingClient {
 
     @GetMapping("/v1/search")
@@ -0,0 +1,258 @@
+package com.example.mcp.weather;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Hourly forecasts of recently used locations, stored column-wise: one float[] per variable over an
+// epoch-hour axis, so "at time T" questions are answered by interpolating from memory. The store is
+// bounded by location count; a background pass refetches only stale locations, a few per run, and
+// drops locations nobody asked about for a while. A location has at most one background load queued, and
+// after a failed fetch it is not fetched again until failure-backoff has passed.
+@Component
+public class HourlyForecastStore {
+
+    private static final Logger log = LoggerFactory.getLogger(HourlyForecastStore.class);
+
+    static final String[] VARIABLES = {"temperature_2m", "wind_speed_10m", "precipitation"};
+    static final String[] UNITS = {"°C", "km/h", "mm"};
+    // Precipitation is the sum over the preceding hour, so it is read from the bucket ending after T
+    private static final boolean[] INTERPOLATED = {true, true, false};
+    private static final String HOURLY = String.join(",", VARIABLES);
+    private static final long ANY_TIME = Long.MIN_VALUE;
+
+    // columns[v][i] is variable v for the hour starting at (firstHour + i) * 3600 epoch seconds; NaN = missing
+    private record Series(int firstHour, float[][] columns, long fetchedAt) {
+        int hours() {
+            return columns[0].length;
+        }
+    }
+
+    private static final class Slot {
+        final double latitude;
+        final double longitude;
+        final AtomicBoolean loadQueued = new AtomicBoolean();
+        volatile Series series;
+        volatile long lastAccess;
+        // No fetch before this (System.nanoTime); pushed out after a failure
+        volatile long nextAttempt;
+
+        Slot(double latitude, double longitude, long now) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.lastAccess = now;
+            this.nextAttempt = now;
+        }
+    }
+
+    private final WeatherClient weatherClient;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hourly-forecast-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int forecastDays;
+    private final int maxLocations;
+    private final long maxAgeNanos;
+    private final long idleTimeoutNanos;
+    private final int refreshBatch;
+    private final long failureBackoffNanos;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter fetches;
+
+    public HourlyForecastStore(WeatherClient weatherClient, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                               @Value("${weather.hourly.forecast-days:3}") int forecastDays,
+                               @Value("${weather.hourly.max-locations:1000}") int maxLocations,
+                               @Value("${weather.hourly.max-age:1h}") Duration maxAge,
+                               @Value("${weather.hourly.idle-timeout:6h}") Duration idleTimeout,
+                               @Value("${weather.hourly.refresh-interval:5m}") Duration refreshInterval,
+                               @Value("${weather.hourly.refresh-batch:20}") int refreshBatch,
+                               @Value("${weather.hourly.failure-backoff:30s}") Duration failureBackoff) {
+        this.weatherClient = weatherClient;
+        this.objectMapper = objectMapper;
+        this.forecastDays = forecastDays;
+        this.maxLocations = maxLocations;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.refreshBatch = refreshBatch;
+        this.failureBackoffNanos = failureBackoff.toNanos();
+        this.hits = meterRegistry.counter("weather.hourly.lookups", "outcome", "hit");
+        this.misses = meterRegistry.counter("weather.hourly.lookups", "outcome", "miss");
+        this.fetches = meterRegistry.counter("weather.hourly.fetches");
+        meterRegistry.gaugeMapSize("weather.hourly.locations", Tags.empty(), slots);
+        long period = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshStale, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Marks a location as active; its hourly forecast is fetched in the background if not held yet
+    public void track(double latitude, double longitude) {
+        Slot slot = slotFor(latitude, longitude);
+        if (slot.series != null || System.nanoTime() - slot.nextAttempt < 0 || !slot.loadQueued.compareAndSet(false, true)) return;
+        try {
+            refresher.execute(() -> {
+                try {
+                    load(slot, ANY_TIME);
+                } finally {
+                    slot.loadQueued.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            slot.loadQueued.set(false);
+        }
+    }
+
+    // Forecast values (in VARIABLES order) at the given time, or null when outside the forecast horizon
+    public float[] at(double latitude, double longitude, long epochSecond) {
+        Slot slot = slotFor(latitude, longitude);
+        Series series = slot.series;
+        if (series != null && covers(series, epochSecond)) {
+            hits.increment();
+            JfrEvents.cache("hourly", true);
+        } else {
+            misses.increment();
+            JfrEvents.cache("hourly", false);
+            series = load(slot, epochSecond);
+            if (series == null || !covers(series, epochSecond)) return null;
+        }
+        return sample(series, epochSecond);
+    }
+
+    private Slot slotFor(double latitude, double longitude) {
+        long now = System.nanoTime();
+        // ~1 km grid: nearby coordinates share one entry
+        long key = (Math.round(latitude * 100) + 9_000) * 36_001 + (Math.round(longitude * 100) + 18_000);
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(key, k -> new Slot(Math.round(latitude * 100) / 100.0,
+                    Math.round(longitude * 100) / 100.0, now));
+            if (slots.size() > maxLocations) evictLeastRecentlyUsed(slot);
+        }
+        slot.lastAccess = now;
+        return slot;
+    }
+
+    // Fetches the slot's forecast unless it already holds a fresh one, or one that covers the wanted time
+    // (a fresh forecast that does not cover it will not after a refetch either: the horizon stays the same)
+    private Series load(Slot slot, long wantedEpochSecond) {
+        synchronized (slot) {
+            Series current = slot.series;
+            if (current != null && (System.nanoTime() - current.fetchedAt() <= maxAgeNanos
+                    || (wantedEpochSecond != ANY_TIME && covers(current, wantedEpochSecond)))) {
+                return current;
+            }
+            if (System.nanoTime() - slot.nextAttempt < 0) return current;
+            try {
+                String json = weatherClient.hourly(Double.toString(slot.latitude), Double.toString(slot.longitude),
+                        HOURLY, forecastDays, "unixtime");
+                fetches.increment();
+                Series series = parse(json);
+                if (series != null) slot.series = series;
+                return series != null ? series : current;
+            } catch (Exception e) {
+                log.warn("Hourly forecast fetch failed for {},{}: {}", slot.latitude, slot.longitude, e.getMessage());
+                slot.nextAttempt = System.nanoTime() + failureBackoffNanos;
+                return current;
+            }
+        }
+    }
+
+    private Series parse(String json) throws Exception {
+        JsonNode hourly = objectMapper.readTree(json).path("hourly");
+        JsonNode time = hourly.path("time");
+        if (!time.isArray() || time.isEmpty()) return null;
+        int hours = time.size();
+        float[][] columns = new float[VARIABLES.length][hours];
+        for (int v = 0; v < VARIABLES.length; v++) {
+            JsonNode values = hourly.path(VARIABLES[v]);
+            float[] column = columns[v];
+            Arrays.fill(column, Float.NaN);
+            for (int i = 0; i < hours && i < values.size(); i++) {
+                JsonNode value = values.get(i);
+                if (value.isNumber()) column[i] = value.floatValue();
+            }
+        }
+        return new Series((int) Math.floorDiv(time.get(0).asLong(), 3600), columns, System.nanoTime());
+    }
+
+    private static boolean covers(Series series, long epochSecond) {
+        double offset = epochSecond / 3600.0 - series.firstHour();
+        return offset >= 0 && offset <= series.hours() - 1;
+    }
+
+    private static float[] sample(Series series, long epochSecond) {
+        double offset = epochSecond / 3600.0 - series.firstHour();
+        int index = (int) Math.floor(offset);
+        double fraction = offset - index;
+        int next = Math.min(index + 1, series.hours() - 1);
+        float[] values = new float[VARIABLES.length];
+        for (int v = 0; v < VARIABLES.length; v++) {
+            float[] column = series.columns()[v];
+            if (!INTERPOLATED[v]) {
+                values[v] = column[fraction > 0 ? next : index];
+            } else if (Float.isNaN(column[index]) || Float.isNaN(column[next])) {
+                values[v] = Float.isNaN(column[index]) ? column[next] : column[index];
+            } else {
+                values[v] = (float) (column[index] + (column[next] - column[index]) * fraction);
+            }
+        }
+        return values;
+    }
+
+    private void evictLeastRecentlyUsed(Slot keep) {
+        Map.Entry<Long, Slot> oldest = null;
+        for (Map.Entry<Long, Slot> entry : slots.entrySet()) {
+            if (entry.getValue() == keep) continue;
+            if (oldest == null || entry.getValue().lastAccess - oldest.getValue().lastAccess < 0) oldest = entry;
+        }
+        if (oldest != null) slots.remove(oldest.getKey(), oldest.getValue());
+    }
+
+    // Incremental refresh: drop idle locations, then refetch the stalest few instead of everything at once
+    private void refreshStale() {
+        try {
+            long now = System.nanoTime();
+            slots.values().removeIf(slot -> now - slot.lastAccess > idleTimeoutNanos);
+            record Stale(Slot slot, long age) {}
+            List<Stale> stale = new ArrayList<>();
+            for (Slot slot : slots.values()) {
+                Series series = slot.series;
+                if (series != null && now - series.fetchedAt() > maxAgeNanos) stale.add(new Stale(slot, now - series.fetchedAt()));
+            }
+            stale.sort(Comparator.comparingLong(Stale::age).reversed());
+            for (int i = 0; i < stale.size() && i < refreshBatch; i++) {
+                load(stale.get(i).slot(), ANY_TIME);
+            }
+        } catch (Exception e) {
+            log.warn("Hourly forecast refresh failed", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+}
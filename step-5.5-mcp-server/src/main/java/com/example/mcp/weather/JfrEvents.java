@@ -0,0 +1,105 @@
+package com.example.mcp.weather;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder events for MCP dispatch, tool execution and upstream calls, so recordings can be
+// filtered by tool and cache outcome and lined up with allocation and GC events on the same thread.
+// Fields that cost anything to compute are only filled in when the event will be committed.
+// Settings: src/main/resources/jfr/weather-mcp.jfc.
+final class JfrEvents {
+
+    private static final ThreadLocal<ToolExecution> CURRENT_TOOL = new ThreadLocal<>();
+
+    private JfrEvents() {
+    }
+
+    @Name("com.example.mcp.weather.McpDispatch")
+    @Label("MCP Dispatch")
+    @Category({"Weather MCP"})
+    @Description("One JSON-RPC message handled by McpController")
+    @StackTrace(false)
+    static final class McpDispatch extends Event {
+        @Label("Method")
+        String method;
+        @Label("Request Id")
+        String requestId;
+        @Label("Session Id")
+        String sessionId;
+        @Label("Error Code")
+        int errorCode;
+    }
+
+    @Name("com.example.mcp.weather.ToolExecution")
+    @Label("Tool Execution")
+    @Category({"Weather MCP"})
+    @Description("Execution of one WeatherMcpServer tool")
+    @StackTrace(false)
+    static final class ToolExecution extends Event {
+        @Label("Tool")
+        String tool;
+        @Label("Argument Length")
+        @Description("Characters of the JSON arguments")
+        long argumentChars;
+        @Label("Result Length")
+        @Description("Characters of the tool result")
+        long resultChars;
+        @Label("Cache Outcome")
+        @Description("Caches consulted and their outcome, e.g. geocode:hit,nearby:miss")
+        String cacheOutcome;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("com.example.mcp.weather.UpstreamCall")
+    @Label("Upstream Call")
+    @Category({"Weather MCP"})
+    @Description("One Feign request to Open-Meteo")
+    @StackTrace(false)
+    static final class UpstreamCall extends Event {
+        @Label("Host")
+        String host;
+        @Label("Path")
+        String path;
+        @Label("Status")
+        int status;
+        @Label("Response Size")
+        @Description("Content-Length of the response, -1 when chunked or unknown")
+        @DataAmount
+        long responseBytes;
+    }
+
+    // Starts a tool execution event and makes it the target of cache() on this thread
+    static ToolExecution beginTool(String tool) {
+        ToolExecution event = new ToolExecution();
+        if (!event.isEnabled()) return event;
+        event.tool = tool;
+        event.begin();
+        CURRENT_TOOL.set(event);
+        return event;
+    }
+
+    static void endTool(ToolExecution event, Object arguments, Object result, boolean succeeded) {
+        if (!event.isEnabled()) return;
+        CURRENT_TOOL.remove();
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.succeeded = succeeded;
+        event.argumentChars = arguments == null ? 0 : arguments.toString().length();
+        event.resultChars = result == null ? 0 : result.toString().length();
+        event.commit();
+    }
+
+    // Called by the caches; a no-op unless a tool execution event is being recorded on this thread
+    static void cache(String cache, boolean hit) {
+        ToolExecution event = CURRENT_TOOL.get();
+        if (event == null) return;
+        String outcome = cache + (hit ? ":hit" : ":miss");
+        event.cacheOutcome = event.cacheOutcome == null ? outcome : event.cacheOutcome + "," + outcome;
+    }
+}
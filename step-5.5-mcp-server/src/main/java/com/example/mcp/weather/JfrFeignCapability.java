@@ -0,0 +1,37 @@
+package com.example.mcp.weather;
+
+import feign.Capability;
+import feign.Client;
+import feign.Response;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+
+// Wraps every Feign client so each upstream request is a JFR UpstreamCall event
+@Component
+public class JfrFeignCapability implements Capability {
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, options) -> {
+            JfrEvents.UpstreamCall event = new JfrEvents.UpstreamCall();
+            event.begin();
+            Response response = null;
+            try {
+                response = client.execute(request, options);
+                return response;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    URI uri = URI.create(request.url());
+                    event.host = uri.getHost();
+                    event.path = uri.getRawPath();
+                    event.status = response != null ? response.status() : -1;
+                    Integer length = response != null && response.body() != null ? response.body().length() : null;
+                    event.responseBytes = length != null ? length : -1;
+                    event.commit();
+                }
+            }
+        };
+    }
+}
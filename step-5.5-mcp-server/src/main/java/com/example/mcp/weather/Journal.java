@@ -0,0 +1,286 @@
+package com.example.mcp.weather;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Append-only journal of MCP tool calls for offline analysis.
+// Callers claim a slot in a bounded ring with one CAS and fill it in place; nothing on the request path
+// allocates, locks or touches the disk, and a full ring drops the record instead of blocking.
+// A single writer thread drains the ring in batches into memory-mapped segment files, rolled by size
+// and age; JournalReader turns segments back into JSON lines.
+//
+// Segment layout: MAGIC, VERSION, then records of
+//   int length (of what follows), byte type, long epochMillis, varlong durationMicros, 3 x string
+// where a string is varint (byte length + 1, 0 = null) followed by UTF-8 bytes. A zero length ends the segment.
+@Component
+public class Journal {
+
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+    static final int MAGIC = 0x574A4E4C; // "WJNL"
+    static final int VERSION = 1;
+    static final String SUFFIX = ".journal";
+    private static final int MAX_STRING_BYTES = 64 * 1024;
+    // type + epochMillis + durationMicros + 3 string headers, at most
+    private static final int MAX_FIXED_BYTES = 1 + 8 + 10 + 3 * 5;
+
+    // Field names are used by JournalReader
+    enum RecordType {
+        TOOL_CALL("tool", "arguments", "result");
+
+        final String[] fields;
+
+        RecordType(String... fields) {
+            this.fields = fields;
+        }
+    }
+
+    private static final class Entry {
+        RecordType type;
+        long epochMillis;
+        long durationMicros;
+        String first;
+        // Rendered by the writer thread, so callers can hand over parsed arguments and results as they are
+        Object second;
+        Object third;
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long rollIntervalMillis;
+    private final int maxSegments;
+    private final Entry[] ring;
+    private final int mask;
+    // claimed: next sequence to hand out; published[i] holds the sequence last written to slot i
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLongArray published;
+    private volatile long consumed;
+    private final Counter written;
+    private final Counter dropped;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentOpenedAt;
+
+    public Journal(MeterRegistry meterRegistry,
+                   @Value("${journal.enabled:true}") boolean enabled,
+                   @Value("${journal.directory:journal}") Path directory,
+                   @Value("${journal.ring-size:65536}") int ringSize,
+                   @Value("${journal.segment-size:64MB}") DataSize segmentSize,
+                   @Value("${journal.roll-interval:1h}") Duration rollInterval,
+                   @Value("${journal.max-segments:24}") int maxSegments) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentBytes = Math.max(1024 * 1024, segmentSize.toBytes());
+        this.rollIntervalMillis = rollInterval.toMillis();
+        this.maxSegments = maxSegments;
+        int capacity = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+        this.ring = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) ring[i] = new Entry();
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+        this.written = meterRegistry.counter("journal.records", "outcome", "written");
+        this.dropped = meterRegistry.counter("journal.records", "outcome", "dropped");
+        meterRegistry.gauge("journal.backlog", this, journal -> journal.claimed.get() - journal.consumed);
+        this.writer = new Thread(this::drainLoop, "journal-writer");
+        writer.setDaemon(true);
+        if (enabled) writer.start();
+    }
+
+    public void toolCall(String tool, Object arguments, Object result, long durationNanos) {
+        append(RecordType.TOOL_CALL, tool, arguments, result, durationNanos);
+    }
+
+    private void append(RecordType type, String first, Object second, Object third, long durationNanos) {
+        if (!enabled) return;
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int index = (int) sequence & mask;
+        Entry entry = ring[index];
+        entry.type = type;
+        entry.epochMillis = System.currentTimeMillis();
+        entry.durationMicros = durationNanos / 1_000;
+        entry.first = first;
+        entry.second = second;
+        entry.third = third;
+        published.setRelease(index, sequence);
+    }
+
+    // The writer spins briefly, then parks: producers never signal, so the hot path stays a CAS and a few stores
+    private void drainLoop() {
+        long next = 0;
+        int idle = 0;
+        while (running || published.getAcquire((int) next & mask) == next) {
+            int batch = 0;
+            try {
+                while (published.getAcquire((int) next & mask) == next) {
+                    Entry entry = ring[(int) next & mask];
+                    write(entry);
+                    entry.first = null;
+                    entry.second = entry.third = null;
+                    next++;
+                    // Free slots every few records so a burst can refill the ring while the writer is busy
+                    if (++batch % 64 == 0) consumed = next;
+                }
+                if (batch > 0) {
+                    consumed = next;
+                    written.increment(batch);
+                    idle = 0;
+                } else if (segment != null && System.currentTimeMillis() - segmentOpenedAt > rollIntervalMillis) {
+                    closeSegment();
+                } else if (++idle > 100) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                } else {
+                    Thread.onSpinWait();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Journal write failed, skipping record", e);
+                Entry entry = ring[(int) next & mask];
+                entry.first = null;
+                entry.second = entry.third = null;
+                written.increment(batch);
+                next++;
+                consumed = next;
+                dropped.increment();
+            }
+        }
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            log.warn("Could not close journal segment", e);
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        byte[] first = utf8(entry.first);
+        byte[] second = utf8(entry.second);
+        byte[] third = utf8(entry.third);
+        int length = MAX_FIXED_BYTES + size(first) + size(second) + size(third);
+        if (segment == null || segment.remaining() < 4 + length + 4
+                || System.currentTimeMillis() - segmentOpenedAt > rollIntervalMillis) {
+            closeSegment();
+            openSegment();
+        }
+        int start = segment.position();
+        try {
+            segment.position(start + 4);
+            segment.put((byte) entry.type.ordinal());
+            segment.putLong(entry.epochMillis);
+            putVarLong(entry.durationMicros);
+            putString(first);
+            putString(second);
+            putString(third);
+            segment.putInt(start, segment.position() - start - 4);
+        } catch (RuntimeException e) {
+            // Zero what was written and rewind, so the next record takes this slot instead of readers
+            // stopping at its empty length prefix, and a crash leaves no partial record behind
+            for (int i = start; i < segment.position(); i++) segment.put(i, (byte) 0);
+            segment.position(start);
+            throw e;
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Files.createDirectories(directory);
+        // Names sort by creation time; never reuse a millisecond
+        long now = Math.max(System.currentTimeMillis(), segmentOpenedAt + 1);
+        Path file = directory.resolve("tools-" + now + SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.putInt(MAGIC).putInt(VERSION);
+        segmentOpenedAt = now;
+        deleteOldSegments();
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) return;
+        int end = segment.position();
+        if (segment.remaining() >= 4) segment.putInt(0);
+        segment.force();
+        segment = null;
+        try {
+            // Give back the unused, preallocated tail
+            channel.truncate(end + 4L);
+        } catch (IOException e) {
+            log.debug("Could not truncate journal segment", e);
+        }
+        channel.close();
+        channel = null;
+    }
+
+    private void deleteOldSegments() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (int i = 0; i < segments.size() - maxSegments; i++) Files.deleteIfExists(segments.get(i));
+    }
+
+    private static byte[] utf8(Object value) {
+        if (value == null) return null;
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_STRING_BYTES) return bytes;
+        // Truncate on a character boundary
+        int end = MAX_STRING_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) end--;
+        return Arrays.copyOf(bytes, end);
+    }
+
+    private static int size(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private void putString(byte[] bytes) {
+        if (bytes == null) {
+            putVarLong(0);
+            return;
+        }
+        putVarLong(bytes.length + 1L);
+        segment.put(bytes);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            segment.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        segment.put((byte) value);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
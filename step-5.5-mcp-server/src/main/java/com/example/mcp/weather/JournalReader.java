@@ -0,0 +1,91 @@
+package com.example.mcp.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Exports journal segments as JSON lines, oldest first. Arguments are segment files or directories
+// (default: ./journal). Segments still being written are read up to the last complete record.
+//   java -cp target/weather-mcp-server-*.jar -Dloader.main=com.example.mcp.weather.JournalReader \
+//        org.springframework.boot.loader.launch.PropertiesLauncher journal > journal.jsonl
+public final class JournalReader {
+
+    private JournalReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        for (String arg : args.length == 0 ? new String[]{"journal"} : args) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    files.filter(file -> file.getFileName().toString().endsWith(Journal.SUFFIX)).sorted().forEach(segments::add);
+                }
+            } else {
+                segments.add(path);
+            }
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        PrintStream out = System.out;
+        for (Path segment : segments) {
+            export(segment, objectMapper, out);
+        }
+        out.flush();
+    }
+
+    static void export(Path segment, ObjectMapper objectMapper, PrintStream out) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != Journal.MAGIC || buffer.getInt() != Journal.VERSION) {
+            System.err.println("Skipping " + segment + ": not a journal segment");
+            return;
+        }
+        Journal.RecordType[] types = Journal.RecordType.values();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) break;
+            int end = buffer.position() + length;
+            Journal.RecordType type = types[buffer.get()];
+            ObjectNode node = objectMapper.createObjectNode()
+                    .put("time", Instant.ofEpochMilli(buffer.getLong()).toString())
+                    .put("type", type.name().toLowerCase())
+                    .put("durationMicros", getVarLong(buffer));
+            for (String field : type.fields) {
+                node.put(field, getString(buffer));
+            }
+            buffer.position(end);
+            out.println(objectMapper.writeValueAsString(node));
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = (int) getVarLong(buffer) - 1;
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
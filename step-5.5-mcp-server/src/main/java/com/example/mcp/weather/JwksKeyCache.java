@@ -0,0 +1,106 @@
+package com.example.mcp.weather;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Signing keys of the token issuer (Keycloak, or the load-harness issuer stub), fetched at startup and refreshed
+// in the background, so verifying a token never waits for the issuer. A token signed with a key id we do not know
+// triggers one early refresh, at most once per min-refresh-interval: that picks up key rotation without letting
+// tokens with made-up key ids turn into requests to the issuer. A failed refresh keeps the previous keys.
+@Component
+public class JwksKeyCache implements JWKSource<SecurityContext> {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksKeyCache.class);
+
+    private final URI jwkSetUri;
+    private final Duration timeout;
+    private final long minRefreshNanos;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService refresher;
+    private final Counter refreshed;
+    private final Counter refreshFailed;
+    private volatile JWKSet keys = new JWKSet();
+    private long lastRefresh;
+
+    public JwksKeyCache(MeterRegistry meterRegistry,
+                        @Value("${security.jwt.enabled:false}") boolean enabled,
+                        @Value("${security.jwt.jwk-set-uri:http://localhost:8180/realms/quarkus/protocol/openid-connect/certs}") URI jwkSetUri,
+                        @Value("${security.jwt.jwks.refresh-interval:5m}") Duration refreshInterval,
+                        @Value("${security.jwt.jwks.min-refresh-interval:30s}") Duration minRefreshInterval,
+                        @Value("${security.jwt.jwks.timeout:2s}") Duration timeout) {
+        this.jwkSetUri = jwkSetUri;
+        this.timeout = timeout;
+        this.minRefreshNanos = minRefreshInterval.toNanos();
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.refreshed = meterRegistry.counter("security.jwks.refreshes", "outcome", "success");
+        this.refreshFailed = meterRegistry.counter("security.jwks.refreshes", "outcome", "failure");
+        meterRegistry.gauge("security.jwks.keys", this, cache -> cache.keys.size());
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            // Pre-warm: the first request should not pay for the fetch. An unreachable issuer is not fatal,
+            // the scheduled refresh keeps trying.
+            refresh();
+            long period = refreshInterval.toMillis();
+            refresher.scheduleWithFixedDelay(this::refresh, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) {
+        List<JWK> matches = selector.select(keys);
+        if (matches.isEmpty() && refreshIfAllowed()) matches = selector.select(keys);
+        return matches;
+    }
+
+    private synchronized boolean refreshIfAllowed() {
+        if (lastRefresh != 0 && System.nanoTime() - lastRefresh < minRefreshNanos) return false;
+        return refresh();
+    }
+
+    synchronized boolean refresh() {
+        lastRefresh = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(jwkSetUri).timeout(timeout).GET().build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) throw new IllegalStateException("HTTP " + response.statusCode());
+            keys = JWKSet.parse(response.body());
+            refreshed.increment();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Could not refresh JWKS from {}: {}", jwkSetUri, e.toString());
+        }
+        refreshFailed.increment();
+        return false;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+}
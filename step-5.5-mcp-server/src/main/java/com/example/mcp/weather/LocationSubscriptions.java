@@ -0,0 +1,227 @@
+package com.example.mcp.weather;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// MCP resource subscriptions for current weather at a location: weather://current/{latitude},{longitude}.
+// Subscribed locations (rounded to ~1 km, so neighbours share one) are refreshed once per interval no
+// matter how many sessions follow them; when the current values change, one
+// notifications/resources/updated message per distinct URI is built and fanned out to the subscribers,
+// whose resources/read is then answered from the refreshed payload. Subscriptions end with their session.
+@Component
+public class LocationSubscriptions {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationSubscriptions.class);
+    static final String URI_PREFIX = "weather://current/";
+    private static final Pattern URI_PATTERN = Pattern.compile("^weather://current/(-?\\d+(?:\\.\\d+)?),(-?\\d+(?:\\.\\d+)?)$");
+    private static final String CURRENT = "temperature_2m,wind_speed_10m,precipitation";
+
+    private static final class Location {
+        final double latitude;
+        final double longitude;
+        // Session id -> the URI it subscribed with
+        final Map<String, String> subscribers = new ConcurrentHashMap<>();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        volatile String payload;
+        volatile JsonNode current;
+
+        Location(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    private final WeatherClient weatherClient;
+    private final ObjectMapper objectMapper;
+    private final McpSessions sessions;
+    private final int maxPerSession;
+    private final Map<Long, Location> locations = new ConcurrentHashMap<>();
+    // Session id -> keys of the locations it follows, for cleanup when the session ends
+    private final Map<String, Set<Long>> bySession = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "subscription-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService fetchers;
+    private final Counter refreshes;
+    private final Counter notifications;
+
+    public LocationSubscriptions(WeatherClient weatherClient, ObjectMapper objectMapper, McpSessions sessions,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${weather.subscriptions.update-interval:30s}") Duration updateInterval,
+                                 @Value("${weather.subscriptions.refresh-threads:4}") int refreshThreads,
+                                 @Value("${weather.subscriptions.max-per-session:100}") int maxPerSession) {
+        this.weatherClient = weatherClient;
+        this.objectMapper = objectMapper;
+        this.sessions = sessions;
+        this.maxPerSession = maxPerSession;
+        this.fetchers = Executors.newFixedThreadPool(refreshThreads, r -> {
+            Thread thread = new Thread(r, "subscription-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refreshes = meterRegistry.counter("weather.subscriptions.refreshes");
+        this.notifications = meterRegistry.counter("weather.subscriptions.notifications");
+        meterRegistry.gaugeMapSize("weather.subscriptions.locations", Tags.empty(), locations);
+        meterRegistry.gaugeMapSize("weather.subscriptions.sessions", Tags.empty(), bySession);
+        sessions.onClose(this::unsubscribeAll);
+        long period = updateInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::refreshAll, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void subscribe(String sessionId, String uri) {
+        if (!sessions.isOpen(sessionId)) {
+            throw new IllegalArgumentException("Subscriptions need an open SSE session (POST to the endpoint it announced)");
+        }
+        double[] coordinates = parse(uri);
+        long key = key(coordinates[0], coordinates[1]);
+        Set<Long> followed = bySession.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet());
+        if (!followed.contains(key) && followed.size() >= maxPerSession) {
+            dropIfEmpty(sessionId);
+            throw new IllegalArgumentException("Too many subscriptions for this session");
+        }
+        followed.add(key);
+        // Added inside compute so a concurrent last unsubscribe cannot drop the location under us
+        Location location = locations.compute(key, (k, existing) -> {
+            Location target = existing != null ? existing : new Location(round(coordinates[0]), round(coordinates[1]));
+            target.subscribers.put(sessionId, uri);
+            return target;
+        });
+        // The session may have closed meanwhile; its close listener could have run before the add
+        if (!sessions.isOpen(sessionId)) unsubscribeAll(sessionId);
+        else if (location.payload == null) fetchers.execute(() -> refresh(location));
+    }
+
+    public void unsubscribe(String sessionId, String uri) {
+        double[] coordinates = parse(uri);
+        long key = key(coordinates[0], coordinates[1]);
+        Set<Long> followed = bySession.get(sessionId);
+        if (followed != null && followed.remove(key)) dropIfEmpty(sessionId);
+        remove(key, sessionId);
+    }
+
+    // A session that follows nothing keeps no entry in bySession
+    private void dropIfEmpty(String sessionId) {
+        bySession.computeIfPresent(sessionId, (id, followed) -> followed.isEmpty() ? null : followed);
+    }
+
+    // Current payload for a location: the subscription's copy when it is followed, otherwise a direct fetch
+    public String read(String uri) {
+        double[] coordinates = parse(uri);
+        Location location = locations.get(key(coordinates[0], coordinates[1]));
+        String payload = location != null ? location.payload : null;
+        if (payload != null) return payload;
+        return weatherClient.forecast(Double.toString(coordinates[0]), Double.toString(coordinates[1]), CURRENT);
+    }
+
+    private void unsubscribeAll(String sessionId) {
+        Set<Long> followed = bySession.remove(sessionId);
+        if (followed == null) return;
+        for (Long key : followed) remove(key, sessionId);
+    }
+
+    private void remove(long key, String sessionId) {
+        locations.computeIfPresent(key, (k, location) -> {
+            location.subscribers.remove(sessionId);
+            return location.subscribers.isEmpty() ? null : location;
+        });
+    }
+
+    private void refreshAll() {
+        for (Location location : locations.values()) {
+            fetchers.execute(() -> refresh(location));
+        }
+    }
+
+    private void refresh(Location location) {
+        // A slow upstream must not stack refreshes of the same location
+        if (!location.refreshing.compareAndSet(false, true)) return;
+        try {
+            String payload = weatherClient.forecast(Double.toString(location.latitude), Double.toString(location.longitude), CURRENT);
+            refreshes.increment();
+            JsonNode current = objectMapper.readTree(payload).path("current");
+            JsonNode previous = location.current;
+            location.payload = payload;
+            location.current = current;
+            // Only values count: the observation time alone changing is not worth a notification
+            if (previous != null && !withoutTime(previous).equals(withoutTime(current))) notifySubscribers(location);
+        } catch (Exception e) {
+            log.debug("Refresh failed for {},{}", location.latitude, location.longitude, e);
+        } finally {
+            location.refreshing.set(false);
+        }
+    }
+
+    private static JsonNode withoutTime(JsonNode current) {
+        if (!current.isObject()) return current;
+        JsonNode copy = current.deepCopy();
+        ((ObjectNode) copy).remove("time");
+        return copy;
+    }
+
+    private void notifySubscribers(Location location) throws Exception {
+        Map<String, String> messages = new HashMap<>();
+        for (Map.Entry<String, String> subscriber : location.subscribers.entrySet()) {
+            String uri = subscriber.getValue();
+            String json = messages.get(uri);
+            if (json == null) {
+                json = objectMapper.writeValueAsString(Map.of(
+                        "jsonrpc", "2.0",
+                        "method", "notifications/resources/updated",
+                        "params", Map.of("uri", uri)));
+                messages.put(uri, json);
+            }
+            sessions.sendMessage(subscriber.getKey(), json);
+            notifications.increment();
+        }
+    }
+
+    static double[] parse(String uri) {
+        Matcher matcher = uri == null ? null : URI_PATTERN.matcher(uri.trim());
+        if (matcher == null || !matcher.matches()) {
+            throw new IllegalArgumentException("Unsupported resource URI, expected " + URI_PREFIX + "{latitude},{longitude}: " + uri);
+        }
+        double latitude = Double.parseDouble(matcher.group(1));
+        double longitude = Double.parseDouble(matcher.group(2));
+        if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) throw new IllegalArgumentException("Coordinates out of range: " + uri);
+        return new double[]{latitude, longitude};
+    }
+
+    private static double round(double degrees) {
+        return Math.round(degrees * 100) / 100.0;
+    }
+
+    // Same ~1 km grid as HourlyForecastStore
+    private static long key(double latitude, double longitude) {
+        return (Math.round(latitude * 100) + 9_000) * 36_001 + (Math.round(longitude * 100) + 18_000);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        fetchers.shutdownNow();
+    }
+}
@@ -5,18 +5,22 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolSpecification;
 import dev.langchain4j.agent.tool.ToolSpecifications;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RestController
 @RequestMapping("/mcp")
@@ -29,10 +33,27 @@ public class McpController {
     private static final String KEY_TYPE = "type";
     private static final String KEY_PROPERTIES = "properties";
     private static final String KEY_REQUIRED = "required";
+    private static final int REQUEST_CANCELLED = -32800;
+    private static final int DEADLINE_EXCEEDED = -32001;
+    private static final String TIME_DESCRIPTION = "ISO-8601 date-time such as 2025-06-01T15:00Z (UTC if no offset) or hours from now such as +6";
     private final WeatherMcpServer weatherMcpServer;
     private final ObjectMapper objectMapper;
+    private final ObservationRegistry observationRegistry;
+    private final Journal journal;
+    private final RequestLog requestLog;
+    // Present only in capture mode (mcp.capture.file)
+    private final TrafficCapture capture;
     private final Map<String, ToolInfo> tools = new HashMap<>();
-    private final ExecutorService sseExecutor = Executors.newCachedThreadPool();
+    // tools/call requests in progress by JSON-RPC id, so notifications/cancelled can stop them
+    private final Map<String, ToolCallContext> inFlight = new ConcurrentHashMap<>();
+    private final McpSessions sessions;
+    private final LocationSubscriptions subscriptions;
+    private final ForecastPassthrough passthrough;
+    // Artificial delay for tools/call, used to simulate a degraded replica in load tests
+    private final long injectedLatencyMillis;
+    // Freshness hints (result._meta.maxAgeSeconds): how long a client may reuse a tool result
+    private final long currentMaxAgeSeconds;
+    private final long hourlyMaxAgeSeconds;
 
     static class ToolInfo {
         public ToolSpecification spec;
@@ -44,9 +65,24 @@ public class McpController {
         }
     }
 
-    public McpController(WeatherMcpServer weatherMcpServer, ObjectMapper objectMapper) {
+    public McpController(WeatherMcpServer weatherMcpServer, ObjectMapper objectMapper, ObservationRegistry observationRegistry,
+                         Journal journal, RequestLog requestLog, ObjectProvider<TrafficCapture> capture,
+                         McpSessions sessions, LocationSubscriptions subscriptions, ForecastPassthrough passthrough,
+                         @Value("${mcp.injected-latency:0ms}") Duration injectedLatency,
+                         @Value("${mcp.freshness.current-max-age:5m}") Duration currentMaxAge,
+                         @Value("${mcp.freshness.hourly-max-age:10m}") Duration hourlyMaxAge) {
         this.weatherMcpServer = weatherMcpServer;
         this.objectMapper = objectMapper;
+        this.observationRegistry = observationRegistry;
+        this.journal = journal;
+        this.requestLog = requestLog;
+        this.capture = capture.getIfAvailable();
+        this.sessions = sessions;
+        this.subscriptions = subscriptions;
+        this.passthrough = passthrough;
+        this.injectedLatencyMillis = injectedLatency.toMillis();
+        this.currentMaxAgeSeconds = currentMaxAge.toSeconds();
+        this.hourlyMaxAgeSeconds = hourlyMaxAge.toSeconds();
         initTools();
     }
 
@@ -74,30 +110,52 @@ public class McpController {
 
     @GetMapping("/sse")
     public SseEmitter handleSse(HttpServletRequest request) {
-        SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
-        
-        sseExecutor.execute(() -> {
-            try {
-                String endpointUrl = "/mcp/messages"; 
-                emitter.send(SseEmitter.event().name("endpoint").data(endpointUrl));
-                log.info("Sent endpoint event: {}", endpointUrl);
-            } catch (IOException e) {
-                emitter.completeWithError(e);
-            }
-        });
-
-        return emitter;
+        return sessions.open();
     }
 
     @PostMapping("/messages")
-    public JsonRpcResponse handleMessage(@RequestBody JsonRpcRequest request) {
-        log.info("Received message: {}", request);
+    public JsonRpcResponse handleMessage(@RequestBody JsonRpcRequest request,
+                                         @RequestParam(value = "sessionId", required = false) String sessionId,
+                                         HttpServletResponse httpResponse) {
+        long start = System.nanoTime();
+        JfrEvents.McpDispatch event = new JfrEvents.McpDispatch();
+        event.begin();
+        JsonRpcResponse response = null;
+        Throwable failure = null;
+        try {
+            response = dispatch(request, sessionId, httpResponse);
+            return response;
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            Object status = response != null && response.error() instanceof Map<?, ?> error ? error.get("code") : null;
+            requestLog.record(request.method(), request.id(), System.nanoTime() - start, status != null, status,
+                    request.params(), failure);
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = request.method();
+                event.requestId = request.id() != null ? String.valueOf(request.id()) : null;
+                event.sessionId = sessionId;
+                if (response != null && response.error() instanceof Map<?, ?> error && error.get("code") instanceof Integer code) {
+                    event.errorCode = code;
+                }
+                event.commit();
+            }
+        }
+    }
+
+    // A null response means nothing more to write: notifications, and tool calls already written by passthrough
+    private JsonRpcResponse dispatch(JsonRpcRequest request, String sessionId, HttpServletResponse httpResponse) {
+        // Tool calls go to the journal and a sample of messages to the request log; logging each one is for debugging
+        log.debug("Received message: {}", request);
+        if (capture != null) capture.request(request);
         
         try {
             if ("initialize".equals(request.method())) {
                 return new JsonRpcResponse("2.0", Map.of(
                         "protocolVersion", "2024-11-05",
-                        "capabilities", Map.of("tools", Map.of()),
+                        "capabilities", Map.of("tools", Map.of(), "resources", Map.of("subscribe", true)),
                         "serverInfo", Map.of("name", "Weather MCP Server", "version", "1.0.0")
                 ), null, request.id());
             } else if ("notifications/initialized".equals(request.method())) {
@@ -108,22 +166,31 @@ public class McpController {
                     toolsList.add(toolSpecToMap(info.spec));
                 }
                 return new JsonRpcResponse("2.0", Map.of("tools", toolsList), null, request.id());
+            } else if ("notifications/cancelled".equals(request.method())) {
+                JsonNode requestId = objectMapper.valueToTree(request.params()).path("requestId");
+                ToolCallContext call = requestId.isMissingNode() ? null : inFlight.get(requestId.asText());
+                if (call != null) call.cancel();
+                return null;
             } else if ("tools/call".equals(request.method())) {
-                JsonNode paramsNode = objectMapper.valueToTree(request.params());
-                String name = paramsNode.get("name").asText();
-                JsonNode arguments = paramsNode.get("arguments");
-                
-                ToolInfo toolInfo = tools.get(name);
-                if (toolInfo == null) {
-                    throw new IllegalArgumentException("Tool not found: " + name);
-                }
-                
-                // Execute the tool
-                Object result = executeTool(toolInfo.method, arguments);
-                
-                return new JsonRpcResponse("2.0", Map.of(
-                        "content", List.of(Map.of("type", "text", "text", result.toString()))
-                ), null, request.id());
+                return callTool(request, httpResponse);
+            } else if ("resources/templates/list".equals(request.method())) {
+                return new JsonRpcResponse("2.0", Map.of("resourceTemplates", List.of(Map.of(
+                        "uriTemplate", LocationSubscriptions.URI_PREFIX + "{latitude},{longitude}",
+                        KEY_NAME, "Current weather at a location",
+                        KEY_DESCRIPTION, "Current temperature, wind speed and precipitation; subscribe for change notifications",
+                        "mimeType", "application/json"))), null, request.id());
+            } else if ("resources/list".equals(request.method())) {
+                return new JsonRpcResponse("2.0", Map.of("resources", List.of()), null, request.id());
+            } else if ("resources/read".equals(request.method())) {
+                String uri = resourceUri(request);
+                return new JsonRpcResponse("2.0", Map.of("contents", List.of(Map.of(
+                        "uri", uri, "mimeType", "application/json", "text", subscriptions.read(uri)))), null, request.id());
+            } else if ("resources/subscribe".equals(request.method())) {
+                subscriptions.subscribe(sessionId, resourceUri(request));
+                return new JsonRpcResponse("2.0", Map.of(), null, request.id());
+            } else if ("resources/unsubscribe".equals(request.method())) {
+                if (sessionId != null) subscriptions.unsubscribe(sessionId, resourceUri(request));
+                return new JsonRpcResponse("2.0", Map.of(), null, request.id());
             } else if ("ping".equals(request.method())) {
                 return new JsonRpcResponse("2.0", Map.of(), null, request.id());
             }
@@ -136,6 +203,84 @@ public class McpController {
         }
     }
 
+    private String resourceUri(JsonRpcRequest request) {
+        return objectMapper.valueToTree(request.params()).path("uri").asText(null);
+    }
+
+    private JsonRpcResponse callTool(JsonRpcRequest request, HttpServletResponse httpResponse) throws Exception {
+        JsonNode paramsNode = objectMapper.valueToTree(request.params());
+        String name = paramsNode.get("name").asText();
+        JsonNode arguments = paramsNode.get("arguments");
+
+        ToolInfo toolInfo = tools.get(name);
+        if (toolInfo == null) {
+            throw new IllegalArgumentException("Tool not found: " + name);
+        }
+
+        // The caller's remaining budget; work that cannot finish within it is refused rather than wasted
+        long start = System.nanoTime();
+        ToolCallContext call = ToolCallContext.begin(paramsNode.path("_meta").path("timeoutMs").asLong(-1));
+        String key = request.id() != null ? String.valueOf(request.id()) : null;
+        if (key != null) inFlight.put(key, call);
+        try {
+            call.check(0);
+            if (injectedLatencyMillis > 0) {
+                Thread.sleep(injectedLatencyMillis);
+            }
+            // Execute the tool (the request span continues the caller's trace from the traceparent header)
+            JfrEvents.ToolExecution toolEvent = JfrEvents.beginTool(name);
+            boolean passedThrough = passthrough.handles(name);
+            Object result = null;
+            try {
+                result = Observation.createNotStarted("mcp.tool", observationRegistry)
+                        .lowCardinalityKeyValue("mcp.tool.name", name)
+                        .observeChecked(() -> passedThrough
+                                ? passthrough.write(name, arguments, request.id(), httpResponse)
+                                : executeTool(toolInfo.method, arguments));
+            } finally {
+                JfrEvents.endTool(toolEvent, arguments, result, result != null);
+            }
+            if (passedThrough) {
+                // Already written; too late to turn into a cancellation or deadline error
+                journal.toolCall(name, arguments, result, System.nanoTime() - start);
+                return null;
+            }
+            call.check(0);
+            journal.toolCall(name, arguments, result, System.nanoTime() - start);
+
+            Map<String, Object> toolResult = new LinkedHashMap<>();
+            toolResult.put("content", List.of(Map.of("type", "text", "text", result.toString())));
+            long maxAgeSeconds = ForecastPassthrough.TOOLS.contains(name) ? currentMaxAgeSeconds : hourlyMaxAgeSeconds;
+            if (maxAgeSeconds > 0) toolResult.put("_meta", Map.of("maxAgeSeconds", maxAgeSeconds));
+            return new JsonRpcResponse("2.0", toolResult, null, request.id());
+        } catch (Exception e) {
+            journal.toolCall(name, arguments, "error: " + e, System.nanoTime() - start);
+            if (httpResponse.isCommitted()) {
+                // Passthrough failed mid-stream: the client sees a truncated body, nothing else can be sent
+                log.warn("tools/call {} failed after the response was committed", key, e);
+                return null;
+            }
+            httpResponse.resetBuffer();
+            if (!call.isCancelled() && call.remainingNanos() > 0 && !abortedUpstream(e)) throw e;
+            boolean cancelled = call.isCancelled();
+            log.debug("tools/call {} aborted: {}", key, cancelled ? "cancelled" : "deadline exceeded");
+            return new JsonRpcResponse("2.0", null, Map.of(
+                    "code", cancelled ? REQUEST_CANCELLED : DEADLINE_EXCEEDED,
+                    "message", cancelled ? "Request cancelled" : "Request deadline exceeded"), request.id());
+        } finally {
+            if (key != null) inFlight.remove(key, call);
+            call.finish();
+        }
+    }
+
+    // The upstream interceptor refused the call (reflection and Feign may wrap its exception)
+    private static boolean abortedUpstream(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ToolCallContext.CallAbortedException) return true;
+        }
+        return false;
+    }
+
     private Object executeTool(Method method, JsonNode argumentsNode) throws Exception {
         Parameter[] parameters = method.getParameters();
         Object[] args = new Object[parameters.length];
@@ -170,6 +315,21 @@ public class McpController {
             properties.put("city", Map.of(KEY_TYPE, "string", KEY_DESCRIPTION, "City name (e.g., Istanbul, Berlin)"));
             inputSchema.put(KEY_PROPERTIES, properties);
             inputSchema.put(KEY_REQUIRED, List.of("city"));
+        } else if ("Weather at time".equals(spec.name())) {
+            properties.put("latitude", Map.of(KEY_TYPE, "string", KEY_DESCRIPTION, "Latitude"));
+            properties.put("longitude", Map.of(KEY_TYPE, "string", KEY_DESCRIPTION, "Longitude"));
+            properties.put("time", Map.of(KEY_TYPE, "string", KEY_DESCRIPTION, TIME_DESCRIPTION));
+            inputSchema.put(KEY_PROPERTIES, properties);
+            inputSchema.put(KEY_REQUIRED, List.of("latitude", "longitude", "time"));
+        } else if ("Weather by city at time".equals(spec.name())) {
+            properties.put("city", Map.of(KEY_TYPE, "string", KEY_DESCRIPTION, "City name (e.g., Istanbul, Berlin)"));
+            properties.put("time", Map.of(KEY_TYPE, "string", KEY_DESCRIPTION, TIME_DESCRIPTION));
+            inputSchema.put(KEY_PROPERTIES, properties);
+            inputSchema.put(KEY_REQUIRED, List.of("city", "time"));
+        } else if ("City suggestions".equals(spec.name())) {
+            properties.put("prefix", Map.of(KEY_TYPE, "string", KEY_DESCRIPTION, "Start of a city name, may be misspelled (e.g., Istan, Berln)"));
+            inputSchema.put(KEY_PROPERTIES, properties);
+            inputSchema.put(KEY_REQUIRED, List.of("prefix"));
         } else {
             // Fallback: no-arg schema
             inputSchema.put(KEY_PROPERTIES, properties);
@@ -0,0 +1,205 @@
+package com.example.mcp.weather;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Open MCP SSE sessions. A session lives as long as its event stream: when the stream completes, times out
+// or a send fails, the session is dropped and the close listeners (e.g. subscriptions) are told.
+// Sends run on a small pool. Each session has its own bounded queue drained by at most one pool task at a time;
+// when its queue is full the session is disconnected. A send blocks on the servlet output, so a client that stops
+// reading pins a sender: a watchdog disconnects any session whose send has taken longer than send-timeout and
+// interrupts its sender, so stalled clients hold pool threads for at most that long.
+// A periodic comment frame finds dead connections that would otherwise only be noticed on the next notification.
+@Component
+public class McpSessions {
+
+    private static final Logger log = LoggerFactory.getLogger(McpSessions.class);
+
+    private static final class Session {
+        final SseEmitter emitter;
+        final BlockingQueue<SseEmitter.SseEventBuilder> pending;
+        final AtomicBoolean draining = new AtomicBoolean();
+        // Thread in emitter.send and since when (System.nanoTime); guarded by the session's monitor
+        Thread sender;
+        long sendingSince;
+
+        Session(SseEmitter emitter, int maxPending) {
+            this.emitter = emitter;
+            this.pending = new ArrayBlockingQueue<>(maxPending);
+        }
+    }
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> closeListeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders;
+    private final int maxPending;
+    private final Counter slowClients;
+    private final Counter stalledClients;
+    private final long sendTimeoutNanos;
+    private final ScheduledExecutorService keepalive = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mcp-sse-keepalive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public McpSessions(MeterRegistry meterRegistry,
+                       @Value("${mcp.sse.send-threads:8}") int sendThreads,
+                       @Value("${mcp.sse.max-pending:256}") int maxPending,
+                       @Value("${mcp.sse.send-timeout:5s}") Duration sendTimeout,
+                       @Value("${mcp.sse.keepalive:30s}") Duration keepaliveInterval) {
+        this.senders = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread thread = new Thread(r, "mcp-sse-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxPending = Math.max(1, maxPending);
+        this.slowClients = meterRegistry.counter("mcp.sse.disconnected", "reason", "queue-full");
+        this.stalledClients = meterRegistry.counter("mcp.sse.disconnected", "reason", "send-timeout");
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        meterRegistry.gaugeMapSize("mcp.sse.sessions", Tags.empty(), sessions);
+        long period = keepaliveInterval.toMillis();
+        keepalive.scheduleWithFixedDelay(this::ping, period, period, TimeUnit.MILLISECONDS);
+        long check = Math.max(100, sendTimeout.toMillis() / 4);
+        keepalive.scheduleWithFixedDelay(this::expireStalledSends, check, check, TimeUnit.MILLISECONDS);
+    }
+
+    // Registers the stream and tells the client where to post its messages
+    public SseEmitter open() {
+        String sessionId = UUID.randomUUID().toString();
+        SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
+        emitter.onCompletion(() -> close(sessionId));
+        emitter.onTimeout(() -> close(sessionId));
+        emitter.onError(error -> close(sessionId));
+        sessions.put(sessionId, new Session(emitter, maxPending));
+        send(sessionId, SseEmitter.event().name("endpoint").data("/mcp/messages?sessionId=" + sessionId));
+        return emitter;
+    }
+
+    public boolean isOpen(String sessionId) {
+        return sessionId != null && sessions.containsKey(sessionId);
+    }
+
+    public void onClose(Consumer<String> listener) {
+        closeListeners.add(listener);
+    }
+
+    // JSON-RPC message to one session; the JSON is built once by the caller and shared across sessions
+    public void sendMessage(String sessionId, String json) {
+        send(sessionId, SseEmitter.event().name("message").data(json));
+    }
+
+    private void send(String sessionId, SseEmitter.SseEventBuilder event) {
+        Session session = sessions.get(sessionId);
+        if (session == null) return;
+        if (!session.pending.offer(event)) {
+            log.debug("Disconnecting SSE session {}: {} events pending", sessionId, maxPending);
+            slowClients.increment();
+            session.emitter.complete();
+            close(sessionId);
+            return;
+        }
+        schedule(sessionId, session);
+    }
+
+    private void schedule(String sessionId, Session session) {
+        if (!session.draining.compareAndSet(false, true)) return;
+        try {
+            senders.execute(() -> drain(sessionId, session));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void drain(String sessionId, Session session) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = session.pending.poll()) != null) {
+                if (sessions.get(sessionId) != session) {
+                    // Disconnected by the watchdog while a send was blocked
+                    session.emitter.complete();
+                    return;
+                }
+                synchronized (session) {
+                    session.sender = Thread.currentThread();
+                    session.sendingSince = System.nanoTime();
+                }
+                try {
+                    session.emitter.send(event);
+                } finally {
+                    synchronized (session) {
+                        session.sender = null;
+                    }
+                    // An interrupt from the watchdog must not leak into the next task on this thread
+                    Thread.interrupted();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping SSE session {}", sessionId, e);
+            session.emitter.completeWithError(e);
+            close(sessionId);
+            return;
+        } finally {
+            session.draining.set(false);
+        }
+        // An event queued between the last poll and clearing the flag found the drain still running
+        if (!session.pending.isEmpty() && sessions.get(sessionId) == session) schedule(sessionId, session);
+    }
+
+    private void expireStalledSends() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            synchronized (session) {
+                if (session.sender == null || now - session.sendingSince <= sendTimeoutNanos) continue;
+                session.sender.interrupt();
+            }
+            log.debug("Disconnecting SSE session {}: send blocked for over {} ms", entry.getKey(),
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            stalledClients.increment();
+            close(entry.getKey());
+        }
+    }
+
+    private void ping() {
+        for (String sessionId : sessions.keySet()) {
+            send(sessionId, SseEmitter.event().comment("ping"));
+        }
+    }
+
+    private void close(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session == null) return;
+        session.pending.clear();
+        for (Consumer<String> listener : closeListeners) listener.accept(sessionId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        keepalive.shutdownNow();
+        senders.shutdownNow();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.mcp.weather;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Current-weather payloads of recently fetched points, answered for any request within a radius of one.
+// Entries live in parallel primitive arrays used as a ring (the oldest insert is overwritten), chained
+// per grid cell through next[]; cells are about one radius wide, so a lookup scans the 3x3 block of cells
+// around the point (wider in longitude towards the poles) and picks the nearest fresh entry.
+@Component
+public class NearbyForecastCache {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+    private static final int NONE = -1;
+
+    private final boolean enabled;
+    private final double radiusKm;
+    private final double cellDegrees;
+    private final long maxAgeNanos;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] fetchedAt;
+    private final long[] cells;
+    private final int[] next;
+    private final String[] payloads;
+    // Cell key -> first entry of the cell's chain
+    private final Map<Long, Integer> heads = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int cursor;
+    private int size;
+    private final Counter hits;
+    private final Counter misses;
+
+    public NearbyForecastCache(MeterRegistry meterRegistry,
+                               @Value("${weather.nearby.enabled:true}") boolean enabled,
+                               @Value("${weather.nearby.radius-km:2}") double radiusKm,
+                               @Value("${weather.nearby.max-age:10m}") Duration maxAge,
+                               @Value("${weather.nearby.max-entries:10000}") int maxEntries) {
+        this.enabled = enabled && radiusKm > 0;
+        this.radiusKm = radiusKm;
+        this.cellDegrees = Math.max(radiusKm, 0.001) / KM_PER_DEGREE;
+        this.maxAgeNanos = maxAge.toNanos();
+        int capacity = Math.max(1, maxEntries);
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.fetchedAt = new long[capacity];
+        this.cells = new long[capacity];
+        this.next = new int[capacity];
+        this.payloads = new String[capacity];
+        Arrays.fill(next, NONE);
+        this.hits = meterRegistry.counter("weather.nearby.lookups", "outcome", "hit");
+        this.misses = meterRegistry.counter("weather.nearby.lookups", "outcome", "miss");
+        meterRegistry.gauge("weather.nearby.entries", this, NearbyForecastCache::entryCount);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    // Payload of the nearest fresh entry within the radius, or null
+    public String nearest(double latitude, double longitude) {
+        if (!enabled) return null;
+        long now = System.nanoTime();
+        int row = row(latitude);
+        // Longitude degrees shrink with cos(latitude): scan as many columns as the radius spans there
+        double cos = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        int columnSpan = (int) Math.ceil(1 / cos);
+        int column = column(longitude);
+        String best = null;
+        double bestDistance = radiusKm;
+        lock.readLock().lock();
+        try {
+            for (int r = row - 1; r <= row + 1; r++) {
+                for (int c = column - columnSpan; c <= column + columnSpan; c++) {
+                    Integer head = heads.get(cellKey(r, c));
+                    for (int i = head == null ? NONE : head; i != NONE; i = next[i]) {
+                        if (now - fetchedAt[i] > maxAgeNanos) continue;
+                        double distance = distanceKm(latitude, longitude, latitudes[i], longitudes[i]);
+                        if (distance <= bestDistance) {
+                            bestDistance = distance;
+                            best = payloads[i];
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (best != null) hits.increment();
+        else misses.increment();
+        JfrEvents.cache("nearby", best != null);
+        return best;
+    }
+
+    public void put(double latitude, double longitude, String payload) {
+        if (!enabled || payload == null) return;
+        long cell = cellKey(row(latitude), column(longitude));
+        lock.writeLock().lock();
+        try {
+            int i = cursor;
+            cursor = (cursor + 1) % payloads.length;
+            if (payloads[i] != null) unlink(i);
+            else size++;
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+            fetchedAt[i] = System.nanoTime();
+            payloads[i] = payload;
+            cells[i] = cell;
+            Integer head = heads.put(cell, i);
+            next[i] = head == null ? NONE : head;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unlink(int entry) {
+        long cell = cells[entry];
+        int head = heads.get(cell);
+        if (head == entry) {
+            if (next[entry] == NONE) heads.remove(cell);
+            else heads.put(cell, next[entry]);
+        } else {
+            int previous = head;
+            while (next[previous] != entry) previous = next[previous];
+            next[previous] = next[entry];
+        }
+        next[entry] = NONE;
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    // Columns wrap at the antimeridian so both sides of it share cells
+    private long cellKey(int row, int column) {
+        int columns = (int) Math.ceil(360 / cellDegrees);
+        int wrapped = Math.floorMod(column, columns);
+        return ((long) row << 32) | wrapped;
+    }
+
+    // Equirectangular approximation: accurate to well under a percent at radius scale
+    private static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLon = Math.toRadians(lon2 - lon1);
+        if (dLon > Math.PI) dLon -= 2 * Math.PI;
+        else if (dLon < -Math.PI) dLon += 2 * Math.PI;
+        double x = dLon * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
+    }
+
+    private double entryCount() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
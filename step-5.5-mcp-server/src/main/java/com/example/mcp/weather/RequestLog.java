@@ -0,0 +1,142 @@
+package com.example.mcp.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Sampled, structured request logging (request-log.enabled). Each endpoint (JSON-RPC method) is logged at its
+// sample rate; failures and requests slower than slow-threshold are always logged. The request path only decides
+// whether to log and offers the raw objects to a bounded queue, dropping the line when the queue is full; a single
+// writer thread renders them (Jackson for params and results) and hands the finished line to the logger.
+// Lines go to the com.example.mcp.weather.RequestLog logger as key=value pairs, failures at WARN.
+@Component
+public class RequestLog {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestLog.class);
+
+    private record Entry(long epochMillis, String endpoint, Object id, long durationNanos, boolean failed,
+                         Object status, Object detail, Throwable error, boolean slow) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final double defaultRate;
+    private final Map<String, Double> rates = new HashMap<>();
+    private final long slowNanos;
+    private final int maxDetailChars;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private final Counter written;
+    private final Counter sampledOut;
+    private final Counter dropped;
+
+    public RequestLog(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                      @Value("${request-log.enabled:true}") boolean enabled,
+                      @Value("${request-log.sample-rate:0.01}") double defaultRate,
+                      @Value("${request-log.sample-rates:}") String rates,
+                      @Value("${request-log.slow-threshold:1s}") Duration slowThreshold,
+                      @Value("${request-log.queue-size:8192}") int queueSize,
+                      @Value("${request-log.max-detail-chars:2000}") int maxDetailChars) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled && log.isInfoEnabled();
+        this.defaultRate = defaultRate;
+        // endpoint=rate pairs, e.g. tools/call=0.05,ping=0
+        for (String pair : rates.split(",")) {
+            int eq = pair.lastIndexOf('=');
+            if (eq > 0) this.rates.put(pair.substring(0, eq).trim(), Double.parseDouble(pair.substring(eq + 1).trim()));
+        }
+        this.slowNanos = slowThreshold.toNanos();
+        this.maxDetailChars = maxDetailChars;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.written = meterRegistry.counter("request.log.events", "outcome", "written");
+        this.sampledOut = meterRegistry.counter("request.log.events", "outcome", "sampled-out");
+        this.dropped = meterRegistry.counter("request.log.events", "outcome", "dropped");
+        meterRegistry.gauge("request.log.queue", queue, BlockingQueue::size);
+        this.writer = new Thread(this::drain, "request-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // id, status, detail and error are rendered later on the writer thread, and only if the request is logged
+    public void record(String endpoint, Object id, long durationNanos, boolean failed, Object status, Object detail,
+                       Throwable error) {
+        if (!enabled) return;
+        boolean slow = durationNanos >= slowNanos;
+        failed |= error != null;
+        if (!failed && !slow) {
+            double rate = rates.getOrDefault(endpoint, defaultRate);
+            if (rate <= 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+                sampledOut.increment();
+                return;
+            }
+        }
+        if (!queue.offer(new Entry(System.currentTimeMillis(), endpoint, id, durationNanos, failed, status, detail, error, slow))) {
+            dropped.increment();
+        }
+    }
+
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                line.setLength(0);
+                line.append("time=").append(Instant.ofEpochMilli(entry.epochMillis))
+                        .append(" endpoint=").append(entry.endpoint);
+                if (entry.id != null) line.append(" id=").append(entry.id);
+                line.append(" durationMs=").append(TimeUnit.NANOSECONDS.toMillis(entry.durationNanos));
+                if (entry.status != null) line.append(" status=").append(entry.status);
+                if (entry.slow) line.append(" slow=true");
+                if (entry.failed) line.append(" failed=true");
+                if (entry.detail != null) line.append(" detail=").append(render(entry.detail));
+                if (entry.error != null) log.warn("{}", line.toString(), entry.error);
+                else if (entry.failed) log.warn("{}", line.toString());
+                else log.info("{}", line.toString());
+                written.increment();
+            } catch (RuntimeException e) {
+                log.debug("Could not render request log entry", e);
+            }
+        }
+    }
+
+    private String render(Object value) {
+        String text;
+        if (value instanceof CharSequence chars) {
+            text = chars.toString();
+        } else {
+            try {
+                text = objectMapper.writeValueAsString(value);
+            } catch (Exception e) {
+                text = String.valueOf(value);
+            }
+        }
+        return text.length() > maxDetailChars ? text.substring(0, maxDetailChars) + "…" : text;
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        // Give the writer a moment to flush what is queued
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!queue.isEmpty() && System.nanoTime() < deadline) Thread.sleep(10);
+        writer.interrupt();
+    }
+}
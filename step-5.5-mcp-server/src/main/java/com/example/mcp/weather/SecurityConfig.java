@@ -1,22 +1,37 @@
 package com.example.mcp.weather;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Bearer tokens for the MCP endpoints (security.jwt.enabled), validated through CachedJwtDecoder
+    private final boolean jwtEnabled;
+
+    public SecurityConfig(@Value("${security.jwt.enabled:false}") boolean jwtEnabled) {
+        this.jwtEnabled = jwtEnabled;
+    }
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, CachedJwtDecoder jwtDecoder) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
-            .authorizeHttpRequests(auth -> auth
-                .anyRequest().permitAll()
-            );
+            .authorizeHttpRequests(auth -> {
+                if (jwtEnabled) auth.requestMatchers("/mcp/**").authenticated();
+                auth.anyRequest().permitAll();
+            });
+        if (jwtEnabled) {
+            http
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.decoder(jwtDecoder)));
+        }
         return http.build();
     }
 }
@@ -0,0 +1,68 @@
+package com.example.mcp.weather;
+
+// State of the tools/call running on the current request thread: the caller's deadline (params._meta.timeoutMs)
+// and whether the caller has cancelled it (notifications/cancelled). Cancelling interrupts the thread, which
+// aborts blocking upstream reads; finish() clears a late interrupt so it cannot leak into the next request.
+final class ToolCallContext {
+
+    private static final ThreadLocal<ToolCallContext> CURRENT = new ThreadLocal<>();
+
+    static class CallAbortedException extends RuntimeException {
+        private final boolean cancelled;
+
+        CallAbortedException(boolean cancelled) {
+            super(cancelled ? "Request cancelled" : "Request deadline exceeded", null, false, false);
+            this.cancelled = cancelled;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final Thread thread = Thread.currentThread();
+    private final long deadline;
+    private boolean cancelled;
+    private boolean finished;
+
+    private ToolCallContext(long timeoutMillis) {
+        this.deadline = timeoutMillis < 0 ? Long.MAX_VALUE : System.nanoTime() + timeoutMillis * 1_000_000L;
+    }
+
+    // A negative timeout means the caller sent no deadline
+    static ToolCallContext begin(long timeoutMillis) {
+        ToolCallContext context = new ToolCallContext(timeoutMillis);
+        CURRENT.set(context);
+        return context;
+    }
+
+    static ToolCallContext current() {
+        return CURRENT.get();
+    }
+
+    long remainingNanos() {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Throws when the caller is gone or less than minBudgetNanos of its deadline is left
+    void check(long minBudgetNanos) {
+        if (isCancelled()) throw new CallAbortedException(true);
+        if (remainingNanos() < minBudgetNanos) throw new CallAbortedException(false);
+    }
+
+    synchronized void cancel() {
+        if (finished || cancelled) return;
+        cancelled = true;
+        thread.interrupt();
+    }
+
+    synchronized void finish() {
+        finished = true;
+        if (cancelled) Thread.interrupted();
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.mcp.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Records incoming JSON-RPC requests and (optionally) upstream responses so the traffic can be replayed
+// offline by the load harness (replay profile). Encoding and compression happen on a single writer thread.
+//
+// File layout (gzip): int MAGIC, int VERSION, long captureStartEpochMillis, then records of
+//   byte REQUEST,  long offsetMicros, string body
+//   byte UPSTREAM, long offsetMicros, long durationMicros, int status, string pathAndQuery, bytes body
+// where strings and bytes are an int length followed by (UTF-8) bytes. Offsets are from the capture start.
+class TrafficCapture {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficCapture.class);
+    static final int MAGIC = 0x4D434150; // "MCAP"
+    static final int VERSION = 1;
+    static final byte REQUEST = 1;
+    static final byte UPSTREAM = 2;
+
+    private final ObjectMapper objectMapper;
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "traffic-capture");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "traffic-capture-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    TrafficCapture(ObjectMapper objectMapper, Path file) throws IOException {
+        this.objectMapper = objectMapper;
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        // Sync-flushed gzip: everything up to the last flush is readable even if the server is killed
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024, true), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        flusher.scheduleWithFixedDelay(() -> submit(out::flush), 1, 1, TimeUnit.SECONDS);
+        log.info("Capturing MCP traffic to {}", file.toAbsolutePath());
+    }
+
+    void request(McpController.JsonRpcRequest request) {
+        long offsetMicros = offsetMicros();
+        submit(() -> {
+            out.writeByte(REQUEST);
+            out.writeLong(offsetMicros);
+            writeBytes(objectMapper.writeValueAsBytes(request));
+        });
+    }
+
+    void upstream(String pathAndQuery, int status, byte[] body, long durationNanos) {
+        long offsetMicros = offsetMicros();
+        submit(() -> {
+            out.writeByte(UPSTREAM);
+            out.writeLong(offsetMicros);
+            out.writeLong(durationNanos / 1_000);
+            out.writeInt(status);
+            writeBytes(pathAndQuery.getBytes(StandardCharsets.UTF_8));
+            writeBytes(body);
+        });
+    }
+
+    private long offsetMicros() {
+        return (System.nanoTime() - startNanos) / 1_000;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    private void submit(Write write) {
+        try {
+            writer.execute(() -> {
+                try {
+                    write.run();
+                } catch (IOException e) {
+                    log.warn("Could not write capture record", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    void close() throws IOException, InterruptedException {
+        flusher.shutdownNow();
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        out.close();
+    }
+}
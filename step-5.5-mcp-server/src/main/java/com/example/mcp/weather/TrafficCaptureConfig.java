@@ -0,0 +1,50 @@
+package com.example.mcp.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Client;
+import feign.Response;
+import feign.Util;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+
+// Capture mode: --mcp.capture.file=captures/traffic.mcap records every JSON-RPC request, and with
+// mcp.capture.upstream (default true) every Open-Meteo response, for replay by the load harness
+@Configuration
+@ConditionalOnProperty(name = "mcp.capture.file")
+public class TrafficCaptureConfig {
+
+    @Bean(destroyMethod = "close")
+    TrafficCapture trafficCapture(ObjectMapper objectMapper, @Value("${mcp.capture.file}") Path file) throws IOException {
+        return new TrafficCapture(objectMapper, file);
+    }
+
+    // Replaces the default Feign client for all clients; bodies are buffered so they can be both recorded and returned
+    @Bean
+    @ConditionalOnProperty(name = "mcp.capture.upstream", havingValue = "true", matchIfMissing = true)
+    Client capturingFeignClient(TrafficCapture capture) {
+        Client delegate = new Client.Default(null, null);
+        return (request, options) -> {
+            long start = System.nanoTime();
+            Response response = delegate.execute(request, options);
+            byte[] body;
+            if (response.body() == null) {
+                body = new byte[0];
+            } else {
+                try (InputStream in = response.body().asInputStream()) {
+                    body = Util.toByteArray(in);
+                }
+            }
+            URI uri = URI.create(request.url());
+            String pathAndQuery = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+            capture.upstream(pathAndQuery, response.status(), body, System.nanoTime() - start);
+            return response.toBuilder().body(body).build();
+        };
+    }
+}
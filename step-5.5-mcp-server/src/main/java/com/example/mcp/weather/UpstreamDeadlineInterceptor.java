@@ -0,0 +1,26 @@
+package com.example.mcp.weather;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Applies to every Feign client: an upstream call is not started for a tools/call that was cancelled
+// or whose remaining deadline is too short to get an answer back in time
+@Component
+public class UpstreamDeadlineInterceptor implements RequestInterceptor {
+
+    private final long minBudgetNanos;
+
+    public UpstreamDeadlineInterceptor(@Value("${mcp.deadline.min-upstream-budget:100ms}") Duration minBudget) {
+        this.minBudgetNanos = minBudget.toNanos();
+    }
+
+    @Override
+    public void apply(RequestTemplate template) {
+        ToolCallContext call = ToolCallContext.current();
+        if (call != null) call.check(minBudgetNanos);
+    }
+}
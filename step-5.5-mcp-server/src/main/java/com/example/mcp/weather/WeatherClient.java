@@ -1,10 +1,11 @@
 package com.example.mcp.weather;
 
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "weather-client", url = "https://api.open-meteo.com")
+@FeignClient(name = "weather-client", url = "${open-meteo.forecast-url:https://api.open-meteo.com}")
 public interface WeatherClient {
 
     @GetMapping("/v1/forecast")
@@ -12,4 +13,20 @@ public interface WeatherClient {
                     @RequestParam("longitude") String longitude,
                     @RequestParam("current") String current
     );
+
+    // Same request, body left unread for ForecastPassthrough; the caller closes the response
+    @GetMapping("/v1/forecast")
+    Response forecastResponse(@RequestParam("latitude") String latitude,
+                              @RequestParam("longitude") String longitude,
+                              @RequestParam("current") String current
+    );
+
+    // Hourly series with epoch-second timestamps (timeformat=unixtime)
+    @GetMapping("/v1/forecast")
+    String hourly(@RequestParam("latitude") String latitude,
+                  @RequestParam("longitude") String longitude,
+                  @RequestParam("hourly") String hourly,
+                  @RequestParam("forecast_days") int forecastDays,
+                  @RequestParam("timeformat") String timeFormat
+    );
 }
@@ -1,37 +1,186 @@
 package com.example.mcp.weather;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import dev.langchain4j.agent.tool.Tool;
 import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 @Component
 public class WeatherMcpServer {
 
     private static final Logger log = LoggerFactory.getLogger(WeatherMcpServer.class);
+    private static final Pattern HOURS_FROM_NOW = Pattern.compile("^\\+?(\\d{1,3}(?:\\.\\d+)?)\\s*h?$", Pattern.CASE_INSENSITIVE);
+    private static final int MAX_CACHED_CITIES = 1024;
+    static final String CURRENT = "temperature_2m,wind_speed_10m,precipitation";
     private final WeatherClient weatherClient;
     private final GeocodingClient geocodingClient;
+    private final HourlyForecastStore hourlyForecastStore;
+    private final NearbyForecastCache nearbyForecastCache;
+    private final CityIndex cityIndex;
+    private final ObjectMapper objectMapper;
+    // City name -> geocoding result; city coordinates do not change, so time queries need no upstream call
+    private final Map<String, GeocodingResult> geocodeCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GeocodingResult> eldest) {
+            return size() > MAX_CACHED_CITIES;
+        }
+    };
 
-    public WeatherMcpServer(WeatherClient weatherClient, GeocodingClient geocodingClient) {
+    public WeatherMcpServer(WeatherClient weatherClient, GeocodingClient geocodingClient, HourlyForecastStore hourlyForecastStore,
+                            NearbyForecastCache nearbyForecastCache, CityIndex cityIndex, ObjectMapper objectMapper) {
         this.weatherClient = weatherClient;
         this.geocodingClient = geocodingClient;
+        this.hourlyForecastStore = hourlyForecastStore;
+        this.nearbyForecastCache = nearbyForecastCache;
+        this.cityIndex = cityIndex;
+        this.objectMapper = objectMapper;
     }
 
     @Tool(name = "Current weather", value = "Get current weather forecast for a location.")
     public String forecast(String latitude, String longitude) {
-        return weatherClient.forecast(latitude, longitude, "temperature_2m,wind_speed_10m,precipitation");
+        return currentAt(Double.parseDouble(latitude), Double.parseDouble(longitude), latitude, longitude);
     }
 
     @Tool(name = "Current weather by city", value = "Get current weather forecast by city name.")
     public String forecastByCity(String city) {
-        log.info("Forecast by city called: {}", city);
+        log.debug("Forecast by city called: {}", city);
+        GeocodingResult first = geocode(city);
+        if (first == null) {
+            return "City not found: " + city;
+        }
+        return withPlace(first, currentAt(first.getLatitude(), first.getLongitude(),
+                Double.toString(first.getLatitude()), Double.toString(first.getLongitude())));
+    }
+
+    // Users a few hundred meters apart get the same answer: the nearest fresh forecast within the radius is reused
+    private String currentAt(double lat, double lon, String latitude, String longitude) {
+        hourlyForecastStore.track(lat, lon);
+        String cached = nearbyForecastCache.nearest(lat, lon);
+        if (cached != null) return cached;
+        String forecast = weatherClient.forecast(latitude, longitude, CURRENT);
+        nearbyForecastCache.put(lat, lon, forecast);
+        return forecast;
+    }
+
+    @Tool(name = "Weather at time", value = "Get the forecast for a location at a given time, e.g. later today or tomorrow. "
+            + "Time is an ISO-8601 date-time (UTC unless it has an offset) or hours from now such as +6.")
+    public String forecastAt(String latitude, String longitude, String time) {
+        return hourlyAt(Double.parseDouble(latitude), Double.parseDouble(longitude), time);
+    }
+
+    @Tool(name = "Weather by city at time", value = "Get the forecast for a city at a given time, e.g. later today or tomorrow. "
+            + "Time is an ISO-8601 date-time (UTC unless it has an offset) or hours from now such as +6.")
+    public String forecastByCityAt(String city, String time) {
+        GeocodingResult first = geocode(city);
+        if (first == null) {
+            return "City not found: " + city;
+        }
+        return withPlace(first, hourlyAt(first.getLatitude(), first.getLongitude(), time));
+    }
+
+    @Tool(name = "City suggestions", value = "Suggest city names for a partial or misspelled city name, most populous first. "
+            + "Returns a JSON array of {name, countryCode, population}.")
+    public String citySuggestions(String prefix) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(cityIndex.suggest(prefix, 5));
+    }
+
+    private String hourlyAt(double latitude, double longitude, String time) {
+        long epochSecond = parseTime(time);
+        float[] values = hourlyForecastStore.at(latitude, longitude, epochSecond);
+        String isoTime = Instant.ofEpochSecond(epochSecond).toString();
+        if (values == null) {
+            return "No forecast available for " + isoTime + "; hourly forecasts cover today and the next few days.";
+        }
+        StringBuilder units = new StringBuilder();
+        StringBuilder data = new StringBuilder();
+        for (int v = 0; v < values.length; v++) {
+            String name = HourlyForecastStore.VARIABLES[v];
+            units.append(",\"").append(name).append("\":\"").append(HourlyForecastStore.UNITS[v]).append('"');
+            data.append(",\"").append(name).append("\":");
+            if (Float.isNaN(values[v])) data.append("null");
+            else data.append(Math.round(values[v] * 10) / 10.0);
+        }
+        return "{\"latitude\":" + latitude + ",\"longitude\":" + longitude
+                + ",\"forecast_units\":{\"time\":\"iso8601\"" + units
+                + "},\"forecast\":{\"time\":\"" + isoTime + "\"" + data + "}}";
+    }
+
+    // City tools name the place they resolved to, so a corrected misspelling ("Paros" -> Paris) is visible in the
+    // result: "city" (and "country") lead the JSON object, or the name prefixes a plain-text answer
+    String withPlace(GeocodingResult place, String result) {
+        if (result == null) return null;
+        if (!result.startsWith("{")) return place.getName() + ": " + result;
+        String lead = placeLead(place);
+        String rest = result.substring(1);
+        // An empty object takes the fields without the trailing comma
+        return rest.trim().startsWith("}") ? lead.substring(0, lead.length() - 1) + rest : lead + rest;
+    }
+
+    // Opening of a JSON object with the place fields, ready for the payload's own fields: {"city":"Paris","country":"France",
+    String placeLead(GeocodingResult place) {
+        ObjectNode fields = objectMapper.createObjectNode().put("city", place.getName());
+        if (place.getCountry() != null) fields.put("country", place.getCountry());
+        String json = fields.toString();
+        return json.substring(0, json.length() - 1) + ",";
+    }
+
+    GeocodingResult geocode(String city) {
+        String key = city.trim().toLowerCase();
+        synchronized (geocodeCache) {
+            GeocodingResult cached = geocodeCache.get(key);
+            JfrEvents.cache("geocode", cached != null);
+            if (cached != null) return cached;
+        }
         GeocodingResponse response = geocodingClient.search(city, 1, "en", "json");
         if (response == null || response.getResults() == null || response.getResults().isEmpty()) {
-            return "City not found: " + city;
+            // Likely misspelled: retry once with the closest known name and remember it under this one too
+            String corrected = cityIndex.correct(city);
+            GeocodingResult match = corrected != null ? geocode(corrected) : null;
+            if (match != null) {
+                synchronized (geocodeCache) {
+                    geocodeCache.put(key, match);
+                }
+            }
+            return match;
         }
         GeocodingResult first = response.getResults().get(0);
-        String latitude = Double.toString(first.getLatitude());
-        String longitude = Double.toString(first.getLongitude());
-        return weatherClient.forecast(latitude, longitude, "temperature_2m,wind_speed_10m,precipitation");
+        synchronized (geocodeCache) {
+            geocodeCache.put(key, first);
+        }
+        return first;
+    }
+
+    // "now", hours from now ("+6", "6h"), an ISO instant or offset date-time, a local date-time (UTC) or a date (noon UTC)
+    static long parseTime(String time) {
+        long now = Instant.now().getEpochSecond();
+        String value = time == null ? "" : time.trim();
+        if (value.isEmpty() || value.equalsIgnoreCase("now")) return now;
+        Matcher hours = HOURS_FROM_NOW.matcher(value);
+        if (hours.matches()) return now + Math.round(Double.parseDouble(hours.group(1)) * 3600);
+        try {
+            return OffsetDateTime.parse(value).toEpochSecond();
+        } catch (DateTimeParseException ignored) { }
+        try {
+            return LocalDateTime.parse(value).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException ignored) { }
+        try {
+            return LocalDate.parse(value).atTime(12, 0).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Unsupported time: " + time);
+        }
     }
 }